@@ -0,0 +1,273 @@
+package com.medtrack.backend.config;
+
+import com.medtrack.backend.service.IdempotencyService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes POST requests carrying an Idempotency-Key header safe to retry. The first response is
+ * stored and replayed for repeats, and concurrent duplicates wait for the first request instead of
+ * executing again. Keys are scoped to the authenticated user and bound to the request body: a
+ * key reused with a different payload is rejected instead of replaying the old response.
+ * Unauthenticated requests are never stored or replayed, since they share no scope and their
+ * responses (a login's JWT, for one) must not leak to another client.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final int MAX_STORED_BODY_BYTES = 256 * 1024;
+    private static final long DUPLICATE_WAIT_SECONDS = 30;
+
+    private final IdempotencyService idempotencyService;
+    private final ConcurrentHashMap<String, CompletableFuture<IdempotencyService.StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public IdempotencyFilter(IdempotencyService idempotencyService) {
+        this.idempotencyService = idempotencyService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equalsIgnoreCase(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid " + IDEMPOTENCY_KEY_HEADER + " header");
+            return;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String scopedKey = authentication.getName() + ":" + key;
+        // The body is hashed as the handler streams it, so it is never buffered here
+        HashingRequest hashingRequest = new HashingRequest(request);
+
+        CompletableFuture<IdempotencyService.StoredResponse> pending = new CompletableFuture<>();
+        CompletableFuture<IdempotencyService.StoredResponse> existing = inFlight.putIfAbsent(scopedKey, pending);
+        if (existing != null) {
+            awaitAndReplay(existing, hashingRequest.fingerprint(), response);
+            return;
+        }
+
+        IdempotencyService.StoredResponse result = null;
+        try {
+            Optional<IdempotencyService.StoredResponse> stored = idempotencyService.find(scopedKey);
+            if (stored.isPresent()) {
+                result = stored.get();
+                replay(result, hashingRequest.fingerprint(), response);
+                return;
+            }
+
+            ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+            try {
+                filterChain.doFilter(hashingRequest, wrapper);
+                String fingerprint = hashingRequest.fingerprint();
+                byte[] body = wrapper.getContentAsByteArray();
+                // Server errors are not stored so that a retry gets a fresh attempt
+                if (wrapper.getStatus() < 500 && body.length <= MAX_STORED_BODY_BYTES) {
+                    result = new IdempotencyService.StoredResponse(fingerprint, wrapper.getStatus(),
+                            wrapper.getContentType(), body, LocalDateTime.now());
+                    idempotencyService.save(scopedKey, result);
+                }
+            } finally {
+                wrapper.copyBodyToResponse();
+            }
+        } finally {
+            pending.complete(result);
+            inFlight.remove(scopedKey, pending);
+        }
+    }
+
+    private void awaitAndReplay(CompletableFuture<IdempotencyService.StoredResponse> existing, String fingerprint,
+                                HttpServletResponse response) throws IOException {
+        IdempotencyService.StoredResponse result;
+        try {
+            result = existing.get(DUPLICATE_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpServletResponse.SC_CONFLICT, "A request with this " + IDEMPOTENCY_KEY_HEADER + " is still in progress");
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            response.sendError(HttpServletResponse.SC_CONFLICT, "A request with this " + IDEMPOTENCY_KEY_HEADER + " is still in progress");
+            return;
+        }
+        if (result == null) {
+            response.sendError(HttpServletResponse.SC_CONFLICT, "The original request with this " + IDEMPOTENCY_KEY_HEADER + " failed; retry it");
+            return;
+        }
+        replay(result, fingerprint, response);
+    }
+
+    private void replay(IdempotencyService.StoredResponse stored, String fingerprint, HttpServletResponse response)
+            throws IOException {
+        if (!stored.requestFingerprint().equals(fingerprint)) {
+            response.sendError(422, IDEMPOTENCY_KEY_HEADER + " was already used for a different request");
+            return;
+        }
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        byte[] body = stored.body() != null ? stored.body() : new byte[0];
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Feeds every body byte the handler reads into a SHA-256 digest. fingerprint() drains whatever
+     * the handler left unread, so the hash always covers the whole body. Multipart bodies are parsed
+     * by the container without going through getInputStream(), so for those the parts (name,
+     * filename, size and content) are hashed instead.
+     */
+    private static class HashingRequest extends HttpServletRequestWrapper {
+        private final MessageDigest digest;
+        private ServletInputStream stream;
+        private String fingerprint;
+
+        HashingRequest(HttpServletRequest request) {
+            super(request);
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (stream == null) {
+                ServletInputStream original = super.getInputStream();
+                stream = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        int b = original.read();
+                        if (b >= 0) {
+                            digest.update((byte) b);
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int read = original.read(buffer, offset, length);
+                        if (read > 0) {
+                            digest.update(buffer, offset, read);
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return original.isFinished();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return original.isReady();
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        original.setReadListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            Charset charset = getCharacterEncoding() != null ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        String fingerprint() throws IOException, ServletException {
+            if (fingerprint == null) {
+                if (isMultipart()) {
+                    digestParts();
+                } else {
+                    drain(getInputStream());
+                }
+                fingerprint = getMethod() + " " + getRequestURI() + " " + HexFormat.of().formatHex(digest.digest());
+            }
+            return fingerprint;
+        }
+
+        private boolean isMultipart() {
+            String contentType = getContentType();
+            return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("multipart/");
+        }
+
+        private void digestParts() throws IOException, ServletException {
+            List<Part> parts = new ArrayList<>(getParts());
+            parts.sort(Comparator.comparing(Part::getName)
+                    .thenComparing(part -> String.valueOf(part.getSubmittedFileName())));
+            for (Part part : parts) {
+                String header = part.getName() + "\0" + part.getSubmittedFileName() + "\0" + part.getSize() + "\0";
+                digest.update(header.getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = part.getInputStream()) {
+                    drainInto(in);
+                }
+            }
+        }
+
+        private void drain(ServletInputStream in) throws IOException {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer, 0, buffer.length) >= 0) {
+                // Drained into the digest
+            }
+        }
+
+        private void drainInto(InputStream in) throws IOException {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.medtrack.backend.config;
 
 import com.medtrack.backend.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -21,9 +22,11 @@ import java.util.List;
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final IdempotencyFilter idempotencyFilter;
 
-    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter) {
+    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter, IdempotencyFilter idempotencyFilter) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.idempotencyFilter = idempotencyFilter;
     }
 
     @Bean
@@ -43,7 +46,11 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Async re-dispatches of streaming responses were authorized on the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
+                        // The STOMP CONNECT frame carries the JWT, see StompAuthChannelInterceptor
+                        .requestMatchers("/ws/**").permitAll()
                         .requestMatchers("/api/users/doctors").hasAnyAuthority("patient", "doctor") 
                         .requestMatchers("/api/users/me/**").hasAnyAuthority("patient", "doctor")
                         .requestMatchers("/api/users/patients").hasAnyAuthority("patient", "doctor")
@@ -55,13 +62,24 @@ public class SecurityConfig {
                         .requestMatchers("/api/reports/files/**").hasRole("doctor") // Changed to hasAnyAuthority
                         .requestMatchers("/api/appointments/**").hasAnyAuthority("patient", "doctor") // Changed to hasAnyAuthority
                         .requestMatchers("/api/availability/**").hasAnyAuthority("patient","doctor") // Changed to hasAuthority
+                        // Calendar subscriptions cannot send a JWT; the secret token in the path authorizes them
+                        .requestMatchers("/api/sync/calendar/**").permitAll()
+                        .requestMatchers("/api/sync/**").hasAnyAuthority("patient", "doctor")
+                        .requestMatchers("/api/chat/search/rebuild").hasAuthority("admin")
                         .requestMatchers("/api/chat/**").hasAnyAuthority("patient", "doctor") // Changed to hasAnyAuthority
                         .requestMatchers("/api/notifications/**").hasAnyAuthority("patient", "doctor") // Changed to hasAnyAuthority
                         .requestMatchers("/api/ratings/**").hasAnyAuthority("patient", "doctor") // Changed to hasAuthority
+                        .requestMatchers("/api/statistics/export").hasAuthority("admin")
+                        .requestMatchers("/api/statistics/admin/live").hasAuthority("admin")
+                        .requestMatchers("/api/statistics/admin/engagement").hasAuthority("admin")
+                        .requestMatchers("/api/statistics/admin/doctor-cache").hasAuthority("admin")
+                        .requestMatchers("/api/statistics/admin/percentiles").hasAuthority("admin")
                         .requestMatchers("/api/statistics/**").hasAnyAuthority("patient", "doctor","admin") // Changed to hasAuthority
                         .anyRequest().authenticated()
                 )
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                // Runs after authentication so keys are scoped to the caller
+                .addFilterAfter(idempotencyFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
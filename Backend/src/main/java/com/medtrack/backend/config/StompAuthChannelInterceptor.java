@@ -0,0 +1,98 @@
+package com.medtrack.backend.config;
+
+import com.medtrack.backend.security.JwtAuthenticationToken;
+import com.medtrack.backend.security.JwtUtils;
+import com.medtrack.backend.service.ChatPresenceService;
+import io.jsonwebtoken.Claims;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Authenticates STOMP sessions with the same JWT as the REST API, sent as an Authorization header
+ * on CONNECT (browsers cannot set headers on the WebSocket handshake itself). The user id from the
+ * token is kept in the session attributes. Everything not explicitly allowed is rejected: sessions
+ * may only SEND to /app/** (so clients never write into broker queues directly), SUBSCRIBE to their
+ * own /user queues, and UNSUBSCRIBE.
+ */
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+    public static final String USER_ID_ATTRIBUTE = "userId";
+
+    private final JwtUtils jwtUtils;
+    private final ChatPresenceService chatPresenceService;
+
+    public StompAuthChannelInterceptor(JwtUtils jwtUtils, ChatPresenceService chatPresenceService) {
+        this.jwtUtils = jwtUtils;
+        this.chatPresenceService = chatPresenceService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+        Map<String, Object> session = accessor.getSessionAttributes();
+        StompCommand command = accessor.getCommand();
+        if (command == null) {
+            // Client heartbeats keep an idle session's presence alive
+            if (accessor.isHeartbeat() && session != null && session.get(USER_ID_ATTRIBUTE) != null) {
+                chatPresenceService.touch((Integer) session.get(USER_ID_ATTRIBUTE));
+            }
+            return message;
+        }
+        if (command == StompCommand.CONNECT || command == StompCommand.STOMP) {
+            String header = accessor.getFirstNativeHeader("Authorization");
+            if (header == null || !header.startsWith("Bearer ") || !jwtUtils.validateToken(header.substring(7))) {
+                throw new MessagingException("Missing or invalid token");
+            }
+            String token = header.substring(7);
+            Claims claims = jwtUtils.getClaimsFromToken(token);
+            Integer userId = claims.get("userId", Integer.class);
+            if (userId == null || session == null) {
+                throw new MessagingException("Token has no user id");
+            }
+            accessor.setUser(new JwtAuthenticationToken(token, claims.getSubject(),
+                    Collections.singletonList(new SimpleGrantedAuthority((String) claims.get("role")))));
+            session.put(USER_ID_ATTRIBUTE, userId);
+            chatPresenceService.connected(userId, accessor.getSessionId());
+            return message;
+        }
+        if (command == StompCommand.DISCONNECT) {
+            return message;
+        }
+        Integer userId = session != null ? (Integer) session.get(USER_ID_ATTRIBUTE) : null;
+        if (userId == null) {
+            throw new MessagingException("Not authenticated");
+        }
+        String destination = accessor.getDestination();
+        switch (command) {
+            case SEND -> {
+                if (destination == null || !destination.startsWith("/app/")) {
+                    throw new MessagingException("Messages can only be sent to /app/**");
+                }
+            }
+            case SUBSCRIBE -> {
+                if (destination == null || !destination.startsWith("/user/queue/")) {
+                    throw new MessagingException("Subscriptions are limited to /user/queue/**");
+                }
+            }
+            case UNSUBSCRIBE -> {
+                // Only names a subscription id the session already owns
+            }
+            default -> throw new MessagingException("Unsupported STOMP command: " + command);
+        }
+        chatPresenceService.touch(userId);
+        return message;
+    }
+}
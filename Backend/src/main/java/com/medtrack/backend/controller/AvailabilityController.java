@@ -4,6 +4,7 @@ import com.medtrack.backend.entity.AppointmentSlot;
 import com.medtrack.backend.entity.Availability;
 import com.medtrack.backend.entity.User;
 import com.medtrack.backend.service.AvailabilityService;
+import com.medtrack.backend.service.FreeSlotHeatmapService;
 import com.medtrack.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -11,18 +12,23 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/availability")
 public class AvailabilityController {
     private final AvailabilityService availabilityService;
     private final UserRepository userRepository;
+    private final FreeSlotHeatmapService freeSlotHeatmapService;
 
     @Autowired
-    public AvailabilityController(AvailabilityService availabilityService, UserRepository userRepository) {
+    public AvailabilityController(AvailabilityService availabilityService, UserRepository userRepository,
+                                  FreeSlotHeatmapService freeSlotHeatmapService) {
         this.availabilityService = availabilityService;
         this.userRepository = userRepository;
+        this.freeSlotHeatmapService = freeSlotHeatmapService;
     }
 
     @PostMapping
@@ -55,6 +61,20 @@ public class AvailabilityController {
         }
     }
 
+    @GetMapping("/doctor/schedule")
+    public ResponseEntity<?> getSchedule(@RequestParam String from, @RequestParam(required = false) String to) {
+        try {
+            String username = (String) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+            User doctor = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new IllegalArgumentException("Authenticated doctor not found: " + username));
+            LocalDate fromDate = LocalDate.parse(from);
+            LocalDate toDate = to != null ? LocalDate.parse(to) : fromDate.plusDays(6); // Default to one week
+            return ResponseEntity.ok(availabilityService.getSchedule(doctor.getId(), fromDate, toDate));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @GetMapping("/doctor/{doctorId}/slots")
     public ResponseEntity<?> getAvailableSlots(@PathVariable Integer doctorId, @RequestParam String date) {
         try {
@@ -66,6 +86,14 @@ public class AvailabilityController {
         }
     }
 
+    @GetMapping("/heatmap")
+    public ResponseEntity<Map<String, Object>> getHeatmap(
+            @RequestParam(required = false) String specialty,
+            @RequestParam(required = false) String location,
+            @RequestParam(defaultValue = "60") int days) {
+        return ResponseEntity.ok(freeSlotHeatmapService.getHeatmap(specialty, location, days));
+    }
+
     @PostMapping("/book/{slotId}")
     public ResponseEntity<?> bookSlot(@PathVariable Integer slotId) {
         try {
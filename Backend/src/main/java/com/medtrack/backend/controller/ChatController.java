@@ -2,35 +2,45 @@ package com.medtrack.backend.controller;
 
 import com.medtrack.backend.entity.Chat;
 import com.medtrack.backend.entity.User;
+import com.medtrack.backend.service.ChatPresenceService;
+import com.medtrack.backend.service.ChatSearchIndex;
 import com.medtrack.backend.service.ChatService;
 import com.medtrack.backend.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/chat")
 public class ChatController {
     private final ChatService chatService;
     private final UserService userService;
+    private final ChatPresenceService chatPresenceService;
+    private final ChatSearchIndex chatSearchIndex;
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ChatController.class);
 
     @Autowired
-    public ChatController(ChatService chatService, UserService userService) {
+    public ChatController(ChatService chatService, UserService userService, ChatPresenceService chatPresenceService,
+                          ChatSearchIndex chatSearchIndex) {
         this.chatService = chatService;
         this.userService = userService;
+        this.chatPresenceService = chatPresenceService;
+        this.chatSearchIndex = chatSearchIndex;
     }
 
     @PostMapping
     public ResponseEntity<Chat> sendMessage(@RequestBody ChatDTO chatDTO) {
         try {
-            User sender = userService.findById(chatDTO.getSenderId())
+            User sender = userService.findCachedById(chatDTO.getSenderId())
                     .orElseThrow(() -> new IllegalArgumentException("Sender not found with ID: " + chatDTO.getSenderId()));
-            User receiver = userService.findById(chatDTO.getReceiverId())
+            User receiver = userService.findCachedById(chatDTO.getReceiverId())
                     .orElseThrow(() -> new IllegalArgumentException("Receiver not found with ID: " + chatDTO.getReceiverId()));
 
             Chat chat = new Chat();
@@ -49,12 +59,22 @@ public class ChatController {
         }
     }
 
+    /**
+     * Latest messages of a conversation, oldest first. To load older history pass the seq of the
+     * first message received as beforeSeq.
+     */
     @GetMapping("/conversation/{userId1}/{userId2}")
-    public ResponseEntity<List<Chat>> getConversation(@PathVariable Integer userId1, @PathVariable Integer userId2) {
-        logger.info("Fetching conversation between user ID: {} and user ID: {}", userId1, userId2);
-        List<Chat> messages = chatService.getConversation(userId1, userId2);
-        logger.debug("Returning {} messages: {}", messages.size(), messages);
-        return ResponseEntity.ok(messages);
+    public ResponseEntity<?> getConversation(@PathVariable Integer userId1, @PathVariable Integer userId2,
+                                             @RequestParam(required = false) Long beforeSeq,
+                                             @RequestParam(defaultValue = "" + ChatService.DEFAULT_PAGE_SIZE) int limit) {
+        logger.info("Fetching conversation between user ID: {} and user ID: {} before seq {}", userId1, userId2, beforeSeq);
+        try {
+            List<Chat> messages = chatService.getConversation(userId1, userId2, beforeSeq, limit);
+            logger.debug("Returning {} messages", messages.size());
+            return ResponseEntity.ok(messages);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
     }
 
     @GetMapping("/unread/{receiverId}")
@@ -63,6 +83,61 @@ public class ChatController {
         return ResponseEntity.ok(unreadMessages);
     }
 
+    /**
+     * Marks the conversation read for userId up to upToSeq (inclusive), or entirely when omitted.
+     */
+    @PutMapping("/conversation/{userId}/{peerId}/read")
+    public ResponseEntity<?> markConversationRead(@PathVariable Integer userId, @PathVariable Integer peerId,
+                                                  @RequestParam(required = false) Long upToSeq) {
+        if (!chatService.markConversationRead(userId, peerId, upToSeq)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/presence")
+    public ResponseEntity<Map<Integer, Boolean>> getPresence(@RequestParam List<Integer> userIds) {
+        return ResponseEntity.ok(chatPresenceService.getOnline(userIds));
+    }
+
+    // Searches the authenticated user's own conversations only
+    @GetMapping("/search")
+    public ResponseEntity<?> searchMessages(@RequestParam String q,
+                                            @RequestParam(required = false) Integer peerId,
+                                            @RequestParam(defaultValue = "0") int offset,
+                                            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            String username = (String) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+            User caller = userService.getUserByUsername(username);
+            return ResponseEntity.ok(chatService.searchMessages(caller.getId(), peerId, q, offset, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<?> rebuildSearchIndex() {
+        return ResponseEntity.accepted().body(Map.of("started", chatSearchIndex.rebuild()));
+    }
+
+    @GetMapping("/inbox/{userId}")
+    public ResponseEntity<?> getInbox(@PathVariable Integer userId,
+                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeAt,
+                                      @RequestParam(required = false) Integer beforeId,
+                                      @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(chatService.getInbox(userId, beforeAt, beforeId, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    // Badge counts answered from memory; prefer this over /unread/{receiverId} when only numbers are needed
+    @GetMapping("/unread/{receiverId}/counts")
+    public ResponseEntity<Map<String, Object>> getUnreadCounts(@PathVariable Integer receiverId) {
+        return ResponseEntity.ok(chatService.getUnreadCounts(receiverId));
+    }
+
     @PutMapping("/{messageId}/read")
     public ResponseEntity<Chat> markAsRead(@PathVariable Integer messageId) {
         Chat updatedChat = chatService.markAsRead(messageId);
@@ -0,0 +1,73 @@
+package com.medtrack.backend.controller;
+
+import com.medtrack.backend.config.StompAuthChannelInterceptor;
+import com.medtrack.backend.entity.Chat;
+import com.medtrack.backend.entity.User;
+import com.medtrack.backend.service.ChatPresenceService;
+import com.medtrack.backend.service.ChatService;
+import com.medtrack.backend.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+
+/**
+ * STOMP counterpart of ChatController. The sender is always the authenticated session's user,
+ * whatever senderId the payload carries.
+ */
+@Controller
+public class ChatSocketController {
+    private final ChatService chatService;
+    private final ChatPresenceService chatPresenceService;
+    private final UserService userService;
+
+    @Autowired
+    public ChatSocketController(ChatService chatService, ChatPresenceService chatPresenceService, UserService userService) {
+        this.chatService = chatService;
+        this.chatPresenceService = chatPresenceService;
+        this.userService = userService;
+    }
+
+    @MessageMapping("/chat.send")
+    public void sendMessage(@Payload ChatDTO chatDTO, SimpMessageHeaderAccessor accessor) {
+        User sender = userService.findCachedById(userId(accessor))
+                .orElseThrow(() -> new IllegalArgumentException("Sender not found"));
+        User receiver = userService.findCachedById(chatDTO.getReceiverId())
+                .orElseThrow(() -> new IllegalArgumentException("Receiver not found with ID: " + chatDTO.getReceiverId()));
+        if (chatDTO.getMessage() == null || chatDTO.getMessage().isBlank()) {
+            throw new IllegalArgumentException("Message is empty");
+        }
+
+        Chat chat = new Chat();
+        chat.setSender(sender);
+        chat.setReceiver(receiver);
+        chat.setMessage(chatDTO.getMessage());
+        chat.setTimestamp(chatDTO.getTimestamp() != null
+                ? OffsetDateTime.parse(chatDTO.getTimestamp()).toLocalDateTime()
+                : LocalDateTime.now());
+        chatService.sendMessage(chat);
+    }
+
+    @MessageMapping("/chat.typing")
+    public void typing(@Payload ChatDTO chatDTO, SimpMessageHeaderAccessor accessor) {
+        User receiver = userService.findById(chatDTO.getReceiverId())
+                .orElseThrow(() -> new IllegalArgumentException("Receiver not found with ID: " + chatDTO.getReceiverId()));
+        chatPresenceService.typing(userId(accessor), receiver.getId(), receiver.getUsername());
+    }
+
+    @MessageExceptionHandler(IllegalArgumentException.class)
+    @SendToUser(value = "/queue/errors", broadcast = false)
+    public ErrorResponse handleError(IllegalArgumentException e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
+    private static Integer userId(SimpMessageHeaderAccessor accessor) {
+        return (Integer) accessor.getSessionAttributes().get(StompAuthChannelInterceptor.USER_ID_ATTRIBUTE);
+    }
+}
@@ -0,0 +1,111 @@
+package com.medtrack.backend.controller;
+
+import com.medtrack.backend.entity.User;
+import com.medtrack.backend.repository.UserRepository;
+import com.medtrack.backend.service.ScheduleSyncService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/sync")
+public class ScheduleSyncController {
+    private static final MediaType TEXT_CALENDAR = MediaType.parseMediaType("text/calendar;charset=UTF-8");
+
+    private final ScheduleSyncService scheduleSyncService;
+    private final UserRepository userRepository;
+
+    @Autowired
+    public ScheduleSyncController(ScheduleSyncService scheduleSyncService, UserRepository userRepository) {
+        this.scheduleSyncService = scheduleSyncService;
+        this.userRepository = userRepository;
+    }
+
+    @GetMapping("/doctor/{doctorId}/changes")
+    public ResponseEntity<?> getChanges(@PathVariable Integer doctorId,
+                                        @RequestParam(required = false) String syncToken) {
+        if (!isAuthenticatedDoctor(doctorId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("Only the doctor can sync their own schedule"));
+        }
+        try {
+            Map<String, Object> changes = scheduleSyncService.getChanges(doctorId, syncToken);
+            return ResponseEntity.ok(changes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/doctor/{doctorId}/calendar.ics")
+    public ResponseEntity<String> getCalendar(@PathVariable Integer doctorId, WebRequest webRequest) {
+        // The feed names patients, so it is only served to the doctor it belongs to
+        if (!isAuthenticatedDoctor(doctorId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return calendar(doctorId, webRequest);
+    }
+
+    /**
+     * Issues the doctor's calendar subscription URL. Calendar apps cannot send a bearer token, so
+     * the URL itself carries a secret; calling this again replaces it and the old URL stops working.
+     */
+    @PostMapping("/doctor/{doctorId}/calendar-token")
+    public ResponseEntity<?> issueCalendarToken(@PathVariable Integer doctorId) {
+        if (!isAuthenticatedDoctor(doctorId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("Only the doctor can subscribe to their own calendar"));
+        }
+        String token = scheduleSyncService.issueCalendarToken(doctorId);
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", token);
+        response.put("path", "/api/sync/calendar/" + token + ".ics");
+        return ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping("/doctor/{doctorId}/calendar-token")
+    public ResponseEntity<?> revokeCalendarToken(@PathVariable Integer doctorId) {
+        if (!isAuthenticatedDoctor(doctorId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("Only the doctor can revoke their own calendar link"));
+        }
+        return scheduleSyncService.revokeCalendarToken(doctorId)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    // Public: the token in the path is the credential, see SecurityConfig
+    @GetMapping("/calendar/{token}.ics")
+    public ResponseEntity<String> getSubscribedCalendar(@PathVariable String token, WebRequest webRequest) {
+        Optional<Integer> doctorId = scheduleSyncService.findDoctorByCalendarToken(token);
+        if (doctorId.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return calendar(doctorId.get(), webRequest);
+    }
+
+    private ResponseEntity<String> calendar(Integer doctorId, WebRequest webRequest) {
+        String etag = scheduleSyncService.getScheduleVersion(doctorId);
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304 already written
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(TEXT_CALENDAR)
+                .body(scheduleSyncService.renderCalendar(doctorId));
+    }
+
+    private boolean isAuthenticatedDoctor(Integer doctorId) {
+        String username = (String) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return userRepository.findByUsername(username)
+                .map(User::getId)
+                .filter(doctorId::equals)
+                .isPresent();
+    }
+}
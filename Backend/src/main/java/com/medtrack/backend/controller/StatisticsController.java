@@ -1,25 +1,62 @@
 package com.medtrack.backend.controller;
 
 import com.medtrack.backend.entity.Statistics;
+import com.medtrack.backend.entity.StatisticsSketch;
+import com.medtrack.backend.entity.User;
+import com.medtrack.backend.repository.UserRepository;
+import com.medtrack.backend.service.LiveDashboardService;
+import com.medtrack.backend.service.MeasurementIngestService;
+import com.medtrack.backend.service.PercentileService;
+import com.medtrack.backend.service.StatisticsExportService;
 import com.medtrack.backend.service.StatisticsService;
+import com.medtrack.backend.service.VitalsService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/statistics")
 public class StatisticsController {
     private final StatisticsService statisticsService;
+    private final VitalsService vitalsService;
+    private final MeasurementIngestService measurementIngestService;
+    private final StatisticsExportService statisticsExportService;
+    private final PercentileService percentileService;
+    private final LiveDashboardService liveDashboardService;
+    private final UserRepository userRepository;
 
     @Autowired
-    public StatisticsController(StatisticsService statisticsService) {
+    public StatisticsController(StatisticsService statisticsService, VitalsService vitalsService,
+                                MeasurementIngestService measurementIngestService,
+                                StatisticsExportService statisticsExportService, PercentileService percentileService,
+                                LiveDashboardService liveDashboardService, UserRepository userRepository) {
         this.statisticsService = statisticsService;
+        this.vitalsService = vitalsService;
+        this.measurementIngestService = measurementIngestService;
+        this.statisticsExportService = statisticsExportService;
+        this.percentileService = percentileService;
+        this.liveDashboardService = liveDashboardService;
+        this.userRepository = userRepository;
     }
 
     @GetMapping("/patient/{patientId}")
@@ -27,6 +64,100 @@ public class StatisticsController {
         return ResponseEntity.ok(statisticsService.getStatisticsByPatient(patientId));
     }
 
+    @GetMapping("/vitals/patient/{patientId}")
+    public ResponseEntity<?> getVitalSeries(
+            @PathVariable Integer patientId,
+            @RequestParam String dataType,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer points) {
+        try {
+            return ResponseEntity.ok(vitalsService.getSeries(patientId, dataType, from, to, points));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Metadata search, e.g. ?meta=device:omron&meta=unit:mmHg&dataType=blood_pressure. Every
+     * pair must match; page through results with afterId=nextAfterId until it is null. Results are
+     * limited to the rows the caller may see.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchByMetadata(
+            @RequestParam List<String> meta,
+            @RequestParam(required = false) String dataType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Integer afterId,
+            @RequestParam(defaultValue = "100") int limit) {
+        Optional<User> caller = currentUser();
+        if (caller.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("User not found"));
+        }
+        Map<String, String> pairs = new LinkedHashMap<>();
+        for (String pair : meta) {
+            int separator = pair.indexOf(':');
+            if (separator <= 0) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Expected key:value but got " + pair));
+            }
+            pairs.put(pair.substring(0, separator), pair.substring(separator + 1));
+        }
+        try {
+            return ResponseEntity.ok(statisticsService.searchByMetadata(pairs, dataType, startDate, endDate, afterId, limit,
+                    caller.get()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportStatistics(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String dataType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        StatisticsExportService.Format exportFormat;
+        try {
+            exportFormat = StatisticsExportService.Format.valueOf(format.toLowerCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        MediaType contentType = exportFormat == StatisticsExportService.Format.csv
+                ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+                : MediaType.parseMediaType("application/x-ndjson");
+        StreamingResponseBody body = out -> statisticsExportService.export(out, exportFormat, dataType, startDate, endDate);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"statistics." + exportFormat + "\"")
+                .body(body);
+    }
+
+    @PostMapping("/ingest")
+    public ResponseEntity<?> ingestMeasurements(HttpServletRequest request,
+                                                @RequestParam(required = false) String format,
+                                                @RequestParam(defaultValue = "false") boolean historical) throws IOException {
+        Optional<User> caller = currentUser();
+        if (caller.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("User not found"));
+        }
+        MeasurementIngestService.Format ingestFormat;
+        if (format != null) {
+            try {
+                ingestFormat = MeasurementIngestService.Format.valueOf(format.toLowerCase());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Unsupported format: " + format));
+            }
+        } else {
+            String contentType = request.getContentType();
+            ingestFormat = contentType != null && contentType.contains("csv")
+                    ? MeasurementIngestService.Format.csv
+                    : MeasurementIngestService.Format.ndjson;
+        }
+        return ResponseEntity.ok(measurementIngestService.ingest(request.getInputStream(), ingestFormat, historical,
+                caller.get()));
+    }
+
     @PostMapping
     public ResponseEntity<Statistics> addStatistics(@RequestBody Statistics statistics) {
         return ResponseEntity.ok(statisticsService.addStatistics(statistics));
@@ -38,10 +169,55 @@ public class StatisticsController {
         return ResponseEntity.ok(statisticsService.getDoctorStatistics(doctorId));
     }
 
+    @GetMapping(value = "/admin/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAdminStatistics() {
+        return liveDashboardService.subscribe();
+    }
+
+    @GetMapping("/admin/doctor-cache")
+    public ResponseEntity<Map<String, Object>> getDoctorStatisticsCacheMetrics() {
+        return ResponseEntity.ok(statisticsService.getDoctorStatisticsCacheMetrics());
+    }
+
+    @GetMapping("/admin/percentiles")
+    public ResponseEntity<?> getPercentiles(
+            @RequestParam String metric,
+            @RequestParam(required = false) Integer doctorId,
+            @RequestParam String from,
+            @RequestParam String to) {
+        try {
+            return ResponseEntity.ok(percentileService.getPercentiles(StatisticsSketch.Metric.valueOf(metric),
+                    doctorId, YearMonth.parse(from), YearMonth.parse(to)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/admin/engagement")
+    public ResponseEntity<?> getEngagementScores(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(statisticsService.getEngagementScores(page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
     @GetMapping("/admin")
-    public ResponseEntity<Map<String, Object>> getAdminStatistics(
+    public ResponseEntity<?> getAdminStatistics(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
-        return ResponseEntity.ok(statisticsService.getAdminStatistics(startDate, endDate));
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Set<String> sections) {
+        try {
+            return ResponseEntity.ok(statisticsService.getAdminStatistics(startDate, endDate, sections));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    private Optional<User> currentUser() {
+        String username = (String) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return userRepository.findByUsername(username);
     }
 }
\ No newline at end of file
@@ -7,7 +7,9 @@ import java.time.LocalDateTime;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "appointment_slots")
+@Table(name = "appointment_slots", indexes = {
+        @Index(name = "idx_appointment_slots_start_time", columnList = "slot_start_time")
+})
 @Data
 public class AppointmentSlot {
     @Id
@@ -0,0 +1,24 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Secret that lets calendar apps fetch a doctor's appointment feed without a JWT. Only the SHA-256
+ * of the token is stored; issuing a new one replaces it, deleting the row revokes the feed.
+ */
+@Entity
+@Table(name = "calendar_feed_tokens")
+@Data
+public class CalendarFeedToken {
+    @Id
+    @Column(name = "doctor_id")
+    private Integer doctorId;
+
+    @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
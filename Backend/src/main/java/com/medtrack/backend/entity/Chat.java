@@ -5,7 +5,9 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "Chats")
+@Table(name = "Chats",
+        uniqueConstraints = @UniqueConstraint(name = "uk_chats_conversation_seq", columnNames = {"conversation_id", "seq"}),
+        indexes = @Index(name = "idx_chats_receiver_conversation_seq", columnList = "receiver_id, conversation_id, seq"))
 @Data
 public class Chat {
     @Id
@@ -25,6 +27,13 @@ public class Chat {
 
     private LocalDateTime timestamp = LocalDateTime.now();
 
-    @Column(name = "isRead", nullable = false) // Updated to map to the 'isRead' column
-    private boolean read = false; // Field name remains 'read' for code consistency
+    // Compatibility view of the receiver's read watermark, filled in by ChatService; never updated in the table
+    @Column(name = "isRead", nullable = false, updatable = false)
+    private boolean read = false;
+
+    @Column(name = "conversation_id")
+    private Integer conversationId;
+
+    // Position within the conversation; messages older than the conversation model have seq <= 0
+    private Long seq;
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Where a message moved to cold storage now lives: its former chats id mapped to its conversation
+ * and seq, which pick exactly one ChatColdSegment. Written by ChatColdStorageService when it moves
+ * the message, since the id ranges of different conversations' segments overlap.
+ */
+@Entity
+@Table(name = "chat_cold_message_ids")
+@Data
+public class ChatColdMessageId {
+    @Id
+    @Column(name = "message_id")
+    private Integer messageId;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Integer conversationId;
+
+    @Column(nullable = false)
+    private Long seq;
+}
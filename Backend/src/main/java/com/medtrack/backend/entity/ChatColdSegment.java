@@ -0,0 +1,35 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * A run of consecutive old messages of one conversation, moved out of chats by ChatColdStorageService.
+ * Segments of a conversation never overlap and together cover every seq below its oldest hot message.
+ */
+@Entity
+@Table(name = "chat_cold_segments",
+        uniqueConstraints = @UniqueConstraint(name = "uk_chat_cold_segments_conversation_seq",
+                columnNames = {"conversation_id", "first_seq"}))
+@Data
+public class ChatColdSegment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Integer conversationId;
+
+    @Column(name = "first_seq", nullable = false)
+    private Long firstSeq;
+
+    @Column(name = "last_seq", nullable = false)
+    private Long lastSeq;
+
+    @Column(name = "message_count", nullable = false)
+    private Integer messageCount;
+
+    // Deflate-compressed, see ChatColdStorageService.encode
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] data;
+}
@@ -0,0 +1,42 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * A chat message the write-behind writer acknowledged but could not insert into chats, kept with
+ * the database error so it can be inspected and re-sent instead of being lost.
+ */
+@Entity
+@Table(name = "chat_dead_letters")
+@Data
+public class ChatDeadLetter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Integer conversationId;
+
+    @Column(nullable = false)
+    private Long seq;
+
+    @Column(name = "sender_id", nullable = false)
+    private Integer senderId;
+
+    @Column(name = "receiver_id", nullable = false)
+    private Integer receiverId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String message;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+}
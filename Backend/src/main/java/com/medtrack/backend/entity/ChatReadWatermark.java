@@ -0,0 +1,32 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Highest conversation seq a user has read. Everything at or below it counts as read, so marking a
+ * whole screen of messages is one upsert; the watermark only ever moves forward.
+ */
+@Entity
+@Table(name = "chat_read_watermarks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_chat_read_watermarks_user_conversation",
+                columnNames = {"user_id", "conversation_id"}))
+@Data
+public class ChatReadWatermark {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Integer conversationId;
+
+    @Column(name = "last_read_seq", nullable = false)
+    private Long lastReadSeq;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,45 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * One row per pair of users, keyed by (lower id, higher id) so both directions share it. last_seq
+ * is the per-conversation message counter; incrementing it locks the row until commit. The last
+ * message columns are kept up to date by sendMessage so the inbox never has to scan chats.
+ */
+@Entity
+@Table(name = "conversations",
+        uniqueConstraints = @UniqueConstraint(name = "uk_conversations_users", columnNames = {"user_low_id", "user_high_id"}),
+        indexes = {
+                @Index(name = "idx_conversations_low_recent", columnList = "user_low_id, last_message_at, id"),
+                @Index(name = "idx_conversations_high_recent", columnList = "user_high_id, last_message_at, id")
+        })
+@Data
+public class Conversation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "user_low_id", nullable = false)
+    private Integer userLowId;
+
+    @Column(name = "user_high_id", nullable = false)
+    private Integer userHighId;
+
+    @Column(name = "last_seq", nullable = false)
+    private Long lastSeq = 0L;
+
+    @Column(name = "last_message_id")
+    private Integer lastMessageId;
+
+    @Column(name = "last_sender_id")
+    private Integer lastSenderId;
+
+    @Column(name = "last_message_preview", length = 140)
+    private String lastMessagePreview;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+}
@@ -0,0 +1,41 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "daily_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_rollups_key",
+                columnNames = {"metric", "rollup_day", "doctor_id", "bucket"}),
+        indexes = @Index(name = "idx_daily_rollups_doctor_metric", columnList = "doctor_id, metric, rollup_day"))
+@Data
+public class DailyRollup {
+    // Doctor id used for system-wide metrics such as registrations
+    public static final int ALL_DOCTORS = 0;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "rollup_day", nullable = false)
+    private LocalDate day;
+
+    @Column(name = "doctor_id", nullable = false)
+    private Integer doctorId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Metric metric;
+
+    // Hour of day for booked_slots, 0 otherwise
+    @Column(nullable = false)
+    private Integer bucket = 0;
+
+    @Column(nullable = false)
+    private Long total = 0L;
+
+    public enum Metric {
+        booked_slots, rating_count, rating_sum, registrations
+    }
+}
@@ -0,0 +1,45 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "schedule_changes", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_schedule_changes_doctor_seq", columnNames = {"doctor_id", "seq"})
+})
+@Data
+public class ScheduleChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Position in the doctor's change sequence; allocated under their sequence row lock so it follows commit order
+    @Column(nullable = false)
+    private Long seq;
+
+    @Column(name = "doctor_id", nullable = false)
+    private Integer doctorId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", nullable = false)
+    private EntityType entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Integer entityId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false)
+    private ChangeType changeType;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt = LocalDateTime.now();
+
+    public enum EntityType {
+        appointment, availability
+    }
+
+    public enum ChangeType {
+        created, modified, cancelled
+    }
+}
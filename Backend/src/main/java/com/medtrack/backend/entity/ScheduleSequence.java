@@ -0,0 +1,16 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// One row per doctor, keyed by the doctor's user id; holds the last seq of their schedule changes
+@Entity
+@Table(name = "schedule_sequence")
+@Data
+public class ScheduleSequence {
+    @Id
+    private Integer id;
+
+    @Column(name = "current_value", nullable = false)
+    private Long currentValue;
+}
@@ -29,6 +29,7 @@ public class Statistics {
     @ElementCollection
     @MapKeyColumn(name = "meta_key")
     @Column(name = "meta_value")
-    @CollectionTable(name = "statistics_metadata", joinColumns = @JoinColumn(name = "statistics_id"))
+    @CollectionTable(name = "statistics_metadata", joinColumns = @JoinColumn(name = "statistics_id"),
+            indexes = @Index(name = "idx_statistics_metadata_kv", columnList = "meta_key, meta_value, statistics_id"))
     private Map<String, String> metadata;
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDate;
+
+/**
+ * Per-day summary of Statistics rows removed by the retention job. Secondary columns hold the
+ * second component of two-part values such as blood pressure ("120/80").
+ */
+@Entity
+@Table(name = "statistics_daily_aggregates",
+        uniqueConstraints = @UniqueConstraint(name = "uk_statistics_daily_aggregates_key",
+                columnNames = {"patient_id", "data_type", "aggregate_day"}))
+@Data
+public class StatisticsDailyAggregate {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "patient_id", nullable = false)
+    private Integer patientId;
+
+    @Column(name = "data_type", nullable = false)
+    private String dataType;
+
+    @Column(name = "aggregate_day", nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private Long count;
+
+    @Column(name = "primary_min", nullable = false)
+    private Double primaryMin;
+
+    @Column(name = "primary_max", nullable = false)
+    private Double primaryMax;
+
+    @Column(name = "primary_sum", nullable = false)
+    private Double primarySum;
+
+    @Column(name = "secondary_count", nullable = false)
+    private Long secondaryCount = 0L;
+
+    @Column(name = "secondary_min")
+    private Double secondaryMin;
+
+    @Column(name = "secondary_max")
+    private Double secondaryMax;
+
+    @Column(name = "secondary_sum")
+    private Double secondarySum;
+}
@@ -0,0 +1,38 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "statistics_sketches",
+        uniqueConstraints = @UniqueConstraint(name = "uk_statistics_sketches_key",
+                columnNames = {"metric", "sketch_month", "doctor_id"}))
+@Data
+public class StatisticsSketch {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "doctor_id", nullable = false)
+    private Integer doctorId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Metric metric;
+
+    // First day of the month the sketch covers
+    @Column(name = "sketch_month", nullable = false)
+    private LocalDate month;
+
+    @Column(nullable = false)
+    private Long total = 0L;
+
+    // QuantileSketch.toBytes()
+    @Column(nullable = false, columnDefinition = "BLOB")
+    private byte[] data;
+
+    public enum Metric {
+        lead_time_minutes, duration_minutes, rating
+    }
+}
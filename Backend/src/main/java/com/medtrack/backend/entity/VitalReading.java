@@ -0,0 +1,36 @@
+package com.medtrack.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "vital_readings", indexes = {
+        @Index(name = "idx_vital_readings_patient_type_time", columnList = "patient_id, data_type, recorded_at")
+})
+@Data
+public class VitalReading {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "patient_id", nullable = false)
+    private Integer patientId;
+
+    @Column(name = "data_type", nullable = false, length = 64)
+    private String dataType;
+
+    @Column(name = "recorded_at", nullable = false)
+    private LocalDateTime recordedAt;
+
+    // Single-valued measurements use only the primary value; blood pressure stores systolic/diastolic
+    @Column(name = "primary_value", nullable = false)
+    private Double primaryValue;
+
+    @Column(name = "secondary_value")
+    private Double secondaryValue;
+
+    // Statistics row this reading was parsed from, if any
+    @Column(name = "source_statistics_id", unique = true)
+    private Integer sourceStatisticsId;
+}
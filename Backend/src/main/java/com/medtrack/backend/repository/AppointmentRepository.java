@@ -1,11 +1,21 @@
 package com.medtrack.backend.repository;
 
 import com.medtrack.backend.entity.Appointment;
+import com.medtrack.backend.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
 import java.util.List;
 
 public interface AppointmentRepository extends JpaRepository<Appointment, Integer> {
     List<Appointment> findByPatientId(Integer patientId);
     List<Appointment> findByDoctorId(Integer doctorId);
+    boolean existsByDoctorIdAndPatientId(Integer doctorId, Integer patientId);
+
+    // Cancelling deletes the appointment and frees its slot, so only appointments still holding their slot count
+    @Query("SELECT a.doctor FROM Appointment a WHERE a.patient.id = ?1 AND a.slot.isBooked = true " +
+            "ORDER BY a.slot.slotStartTime DESC")
+    List<User> findLatestDoctorsByPatientId(Integer patientId, Pageable pageable);
     
 }
\ No newline at end of file
@@ -2,10 +2,12 @@ package com.medtrack.backend.repository;
 
 import com.medtrack.backend.entity.AppointmentSlot;
 import com.medtrack.backend.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -30,6 +32,39 @@ public interface AppointmentSlotRepository extends JpaRepository<AppointmentSlot
     @Query("UPDATE AppointmentSlot s SET s.isBooked = ?2, s.patient = ?3, s.status = ?4, s.createdAt = ?5 WHERE s.id = ?1")
     @Modifying
     void updateSlot(Integer slotId, boolean isBooked, User patient, AppointmentSlot.Status status, LocalDateTime createdAt);
+    @Query("SELECT d.specialty AS specialty, d.location AS location, a.date AS date, COUNT(s) AS freeSlots " +
+            "FROM AppointmentSlot s JOIN s.availability a JOIN a.doctor d " +
+            "WHERE s.isBooked = false AND a.date BETWEEN ?1 AND ?2 " +
+            "GROUP BY d.specialty, d.location, a.date")
+    List<FreeSlotCountView> countFreeSlotsBySpecialtyAndLocation(LocalDate from, LocalDate to);
+
+    @Query("SELECT s.status AS status, COUNT(s) AS total FROM AppointmentSlot s " +
+            "WHERE s.slotStartTime >= ?1 AND s.slotStartTime < ?2 GROUP BY s.status")
+    List<StatusCountView> countByStatusBetween(LocalDateTime from, LocalDateTime to);
+
+    @Query("SELECT HOUR(s.slotStartTime) AS hour, COUNT(s) AS total FROM AppointmentSlot s " +
+            "WHERE s.slotStartTime >= ?1 AND s.slotStartTime < ?2 GROUP BY HOUR(s.slotStartTime)")
+    List<HourCountView> countByHourBetween(LocalDateTime from, LocalDateTime to);
+
+    // Engagement = 0.6 per booked slot + 0.4 per rating, ranked and paged in SQL
+    @Query(value = "SELECT e.patient_id AS patientId, SUM(e.appointments) AS appointments, SUM(e.ratings) AS ratings " +
+            "FROM (SELECT s.patient_id, COUNT(*) AS appointments, 0 AS ratings FROM appointment_slots s " +
+            "WHERE s.is_booked = true AND s.patient_id IS NOT NULL GROUP BY s.patient_id " +
+            "UNION ALL SELECT r.patient_id, 0, COUNT(*) FROM ratings r GROUP BY r.patient_id) e " +
+            "GROUP BY e.patient_id ORDER BY SUM(e.appointments) * 0.6 + SUM(e.ratings) * 0.4 DESC, e.patient_id ASC " +
+            "LIMIT ?2 OFFSET ?1", nativeQuery = true)
+    List<EngagementView> rankEngagement(int offset, int limit);
+
+    @Query(value = "SELECT COUNT(*) FROM (SELECT s.patient_id FROM appointment_slots s " +
+            "WHERE s.is_booked = true AND s.patient_id IS NOT NULL UNION SELECT r.patient_id FROM ratings r) p",
+            nativeQuery = true)
+    long countEngagedPatients();
+
+    @Query("SELECT s.id AS id, a.doctor.id AS doctorId, s.slotStartTime AS slotStartTime, s.slotEndTime AS slotEndTime, " +
+            "s.createdAt AS createdAt FROM AppointmentSlot s JOIN s.availability a " +
+            "WHERE s.isBooked = true AND s.id > ?1 ORDER BY s.id")
+    List<BookingTimesView> findBookingTimesAfter(Integer id, Pageable pageable);
+
     @Query("SELECT s FROM AppointmentSlot s WHERE s.slotEndTime < ?1")
     List<AppointmentSlot> findBySlotEndTimeBefore(LocalDateTime endTime);
 }
\ No newline at end of file
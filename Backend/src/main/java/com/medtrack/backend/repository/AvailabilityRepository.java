@@ -14,6 +14,15 @@ public interface AvailabilityRepository extends JpaRepository<Availability, Inte
     Optional<Availability> findByDoctorAndDate(User doctor, LocalDate date);
     boolean existsByDoctorAndDate(User doctor, LocalDate date);
     List<Availability> findByDoctor(User doctor);
+    List<Availability> findByDoctorId(Integer doctorId);
+
+    @Query("SELECT a.id AS availabilityId, a.date AS date, a.startTime AS startTime, a.endTime AS endTime, " +
+            "s.id AS slotId, s.slotStartTime AS slotStartTime, s.slotEndTime AS slotEndTime, s.isBooked AS booked, " +
+            "s.status AS status, p.id AS patientId, p.firstName AS patientFirstName, p.lastName AS patientLastName " +
+            "FROM Availability a LEFT JOIN a.appointmentSlots s LEFT JOIN s.patient p " +
+            "WHERE a.doctor.id = ?1 AND a.date BETWEEN ?2 AND ?3 " +
+            "ORDER BY a.date ASC, a.startTime ASC, s.slotStartTime ASC")
+    List<ScheduleSlotView> findScheduleByDoctorIdAndDateBetween(Integer doctorId, LocalDate from, LocalDate to);
 
     @Query("DELETE FROM Availability a WHERE a.date < ?1")
     @Modifying
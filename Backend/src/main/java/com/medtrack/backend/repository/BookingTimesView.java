@@ -0,0 +1,11 @@
+package com.medtrack.backend.repository;
+
+import java.time.LocalDateTime;
+
+public interface BookingTimesView {
+    Integer getId();
+    Integer getDoctorId();
+    LocalDateTime getSlotStartTime();
+    LocalDateTime getSlotEndTime();
+    LocalDateTime getCreatedAt();
+}
@@ -0,0 +1,10 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.CalendarFeedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface CalendarFeedTokenRepository extends JpaRepository<CalendarFeedToken, Integer> {
+    Optional<CalendarFeedToken> findByTokenHash(String tokenHash);
+}
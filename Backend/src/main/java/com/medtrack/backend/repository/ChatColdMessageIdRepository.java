@@ -0,0 +1,16 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.ChatColdMessageId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface ChatColdMessageIdRepository extends JpaRepository<ChatColdMessageId, Integer> {
+    // Copies the location of the given chats rows in one statement, before they are deleted
+    @Query(value = "INSERT INTO chat_cold_message_ids (message_id, conversation_id, seq) " +
+            "SELECT c.id, c.conversation_id, c.seq FROM chats c WHERE c.id IN ?1", nativeQuery = true)
+    @Modifying
+    int insertFromChats(List<Integer> ids);
+}
@@ -0,0 +1,26 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.ChatColdSegment;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface ChatColdSegmentRepository extends JpaRepository<ChatColdSegment, Long> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ChatColdSegment s WHERE s.conversationId = ?1 ORDER BY s.firstSeq DESC")
+    List<ChatColdSegment> findLatestForUpdate(Integer conversationId, Pageable pageable);
+
+    // Newest first, served from uk_chat_cold_segments_conversation_seq
+    @Query("SELECT s FROM ChatColdSegment s WHERE s.conversationId = ?1 AND s.firstSeq < ?2 ORDER BY s.firstSeq DESC")
+    List<ChatColdSegment> findBefore(Integer conversationId, Long beforeSeq, Pageable pageable);
+
+    @Query("SELECT s FROM ChatColdSegment s WHERE s.conversationId = ?1 AND s.firstSeq <= ?3 AND s.lastSeq >= ?2")
+    List<ChatColdSegment> findOverlapping(Integer conversationId, Long minSeq, Long maxSeq);
+
+    @Query("SELECT s FROM ChatColdSegment s WHERE s.id > ?1 ORDER BY s.id")
+    List<ChatColdSegment> findAfter(Long afterId, Pageable pageable);
+}
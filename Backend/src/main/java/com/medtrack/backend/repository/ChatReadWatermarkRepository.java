@@ -0,0 +1,36 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.ChatReadWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface ChatReadWatermarkRepository extends JpaRepository<ChatReadWatermark, Long> {
+    List<ChatReadWatermark> findByConversationId(Integer conversationId);
+
+    @Query(value = "INSERT INTO chat_read_watermarks (user_id, conversation_id, last_read_seq, updated_at) " +
+            "VALUES (?1, ?2, ?3, NOW()) ON DUPLICATE KEY UPDATE " +
+            "last_read_seq = GREATEST(last_read_seq, VALUES(last_read_seq)), updated_at = VALUES(updated_at)", nativeQuery = true)
+    @Modifying
+    void advance(Integer userId, Integer conversationId, Long seq);
+
+    // Same upsert addressed by the pair of users; a null seq means everything sent so far, and a
+    // seq past the last message is clamped so it cannot pre-mark messages that are not sent yet
+    @Query(value = "INSERT INTO chat_read_watermarks (user_id, conversation_id, last_read_seq, updated_at) " +
+            "SELECT ?1, v.id, LEAST(COALESCE(?3, v.last_seq), v.last_seq), NOW() FROM conversations v " +
+            "WHERE v.user_low_id = LEAST(?1, ?2) AND v.user_high_id = GREATEST(?1, ?2) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "last_read_seq = GREATEST(last_read_seq, VALUES(last_read_seq)), updated_at = VALUES(updated_at)", nativeQuery = true)
+    @Modifying
+    int advanceBetween(Integer userId, Integer peerId, Long seq);
+
+    // Carries legacy per-message read flags over: the newest read message per receiver and conversation
+    @Query(value = "INSERT INTO chat_read_watermarks (user_id, conversation_id, last_read_seq, updated_at) " +
+            "SELECT c.receiver_id, c.conversation_id, MAX(c.seq), NOW() FROM chats c " +
+            "WHERE c.is_read = true AND c.conversation_id IS NOT NULL GROUP BY c.receiver_id, c.conversation_id " +
+            "ON DUPLICATE KEY UPDATE last_read_seq = GREATEST(last_read_seq, VALUES(last_read_seq))", nativeQuery = true)
+    @Modifying
+    int importLegacyReadFlags();
+}
@@ -1,14 +1,54 @@
 package com.medtrack.backend.repository;
 
 import com.medtrack.backend.entity.Chat;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ChatRepository extends JpaRepository<Chat, Integer> {
     List<Chat> findBySenderIdAndReceiverId(Integer senderId, Integer receiverId);
-    @Query("SELECT c FROM Chat c WHERE (c.sender.id = :userId1 AND c.receiver.id = :userId2) OR (c.sender.id = :userId2 AND c.receiver.id = :userId1) ORDER BY c.timestamp ASC")
-    List<Chat> findConversationBetween(Integer userId1, Integer userId2);
-    List<Chat> findByReceiverIdAndReadFalse(Integer receiverId); // Added to fetch unread messages
-}
\ No newline at end of file
+
+    // Unread = above the receiver's watermark for that conversation (or no watermark yet)
+    @Query("SELECT c FROM Chat c LEFT JOIN ChatReadWatermark w ON w.userId = c.receiver.id AND w.conversationId = c.conversationId " +
+            "WHERE c.receiver.id = ?1 AND (w.lastReadSeq IS NULL OR c.seq > w.lastReadSeq) ORDER BY c.timestamp ASC")
+    List<Chat> findUnreadByReceiverId(Integer receiverId);
+
+    @Query("SELECT c.sender.id AS peerId, COUNT(c) AS unread, MAX(c.seq) AS maxSeq FROM Chat c " +
+            "LEFT JOIN ChatReadWatermark w ON w.userId = c.receiver.id AND w.conversationId = c.conversationId " +
+            "WHERE c.receiver.id = ?1 AND (w.lastReadSeq IS NULL OR c.seq > w.lastReadSeq) GROUP BY c.sender.id")
+    List<UnreadCountView> countUnreadByPeer(Integer receiverId);
+
+    @Query("SELECT c.sender.id AS peerId, COUNT(c) AS unread, MAX(c.seq) AS maxSeq FROM Chat c " +
+            "LEFT JOIN ChatReadWatermark w ON w.userId = c.receiver.id AND w.conversationId = c.conversationId " +
+            "WHERE c.receiver.id = ?1 AND c.sender.id = ?2 AND (w.lastReadSeq IS NULL OR c.seq > w.lastReadSeq) GROUP BY c.sender.id")
+    List<UnreadCountView> countUnreadFromPeer(Integer receiverId, Integer senderId);
+
+    // Newest first, served from uk_chats_conversation_seq
+    @Query("SELECT c FROM Chat c WHERE c.conversationId = ?1 ORDER BY c.seq DESC")
+    List<Chat> findLatestInConversation(Integer conversationId, Pageable pageable);
+
+    @Query("SELECT c FROM Chat c WHERE c.conversationId = ?1 AND c.seq < ?2 ORDER BY c.seq DESC")
+    List<Chat> findInConversationBefore(Integer conversationId, Long beforeSeq, Pageable pageable);
+
+    @Query("SELECT c FROM Chat c WHERE c.conversationId = ?1 AND c.seq IN ?2")
+    List<Chat> findInConversationBySeqs(Integer conversationId, Collection<Long> seqs);
+
+    // Keyset scan for rebuilding the search index
+    @Query("SELECT c.id AS id, c.conversationId AS conversationId, c.seq AS seq, c.sender.id AS senderId, " +
+            "c.receiver.id AS receiverId, c.message AS message FROM Chat c " +
+            "WHERE c.id > ?1 AND c.conversationId IS NOT NULL ORDER BY c.id")
+    List<ChatTextView> findTextAfter(Integer afterId, Pageable pageable);
+
+    @Query("SELECT c FROM Chat c WHERE c.conversationId = ?1 ORDER BY c.seq ASC")
+    List<Chat> findOldestInConversation(Integer conversationId, Pageable pageable);
+
+    @Query("DELETE FROM Chat c WHERE c.id IN ?1")
+    @Modifying
+    void deleteByIds(List<Integer> ids);
+
+    boolean existsByConversationIdIsNull();
+}
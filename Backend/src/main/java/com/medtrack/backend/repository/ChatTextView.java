@@ -0,0 +1,10 @@
+package com.medtrack.backend.repository;
+
+public interface ChatTextView {
+    Integer getId();
+    Integer getConversationId();
+    Long getSeq();
+    Integer getSenderId();
+    Integer getReceiverId();
+    String getMessage();
+}
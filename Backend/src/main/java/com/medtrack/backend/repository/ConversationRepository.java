@@ -0,0 +1,84 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.Conversation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ConversationRepository extends JpaRepository<Conversation, Integer> {
+    Optional<Conversation> findByUserLowIdAndUserHighId(Integer userLowId, Integer userHighId);
+
+    // A locking read sees the latest committed row, unlike a plain read inside a REPEATABLE READ snapshot
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Conversation c WHERE c.userLowId = ?1 AND c.userHighId = ?2")
+    Optional<Conversation> findForUpdate(Integer userLowId, Integer userHighId);
+
+    @Query(value = "INSERT IGNORE INTO conversations (user_low_id, user_high_id, last_seq) VALUES (?1, ?2, 0)", nativeQuery = true)
+    @Modifying
+    void insertIfAbsent(Integer userLowId, Integer userHighId);
+
+    @Query("UPDATE Conversation c SET c.lastSeq = c.lastSeq + 1 WHERE c.id = ?1")
+    @Modifying
+    int incrementSeq(Integer id);
+
+    @Query("SELECT c.lastSeq FROM Conversation c WHERE c.id = ?1")
+    Optional<Long> findLastSeq(Integer id);
+
+    @Query("UPDATE Conversation c SET c.lastMessageId = ?2, c.lastSenderId = ?3, c.lastMessagePreview = ?4, " +
+            "c.lastMessageAt = ?5 WHERE c.id = ?1")
+    @Modifying
+    void updateLastMessage(Integer id, Integer messageId, Integer senderId, String preview, LocalDateTime sentAt);
+
+    // A user's conversations by recency: one index range scan per side of the pair, merged. Pages
+    // continue strictly after the (lastMessageAt, conversationId) of the previous page's last row.
+    @Query(value = "SELECT * FROM (" +
+            "(SELECT v.id AS conversationId, v.user_high_id AS peerId, v.last_sender_id AS lastSenderId, " +
+            "v.last_message_preview AS lastMessagePreview, v.last_message_at AS lastMessageAt, v.last_seq AS lastSeq " +
+            "FROM conversations v WHERE v.user_low_id = ?1 AND v.last_message_at IS NOT NULL " +
+            "AND (?2 IS NULL OR v.last_message_at < ?2 OR (v.last_message_at = ?2 AND v.id < ?3)) " +
+            "ORDER BY v.last_message_at DESC, v.id DESC LIMIT ?4) " +
+            "UNION " +
+            "(SELECT v.id, v.user_low_id, v.last_sender_id, v.last_message_preview, v.last_message_at, v.last_seq " +
+            "FROM conversations v WHERE v.user_high_id = ?1 AND v.last_message_at IS NOT NULL " +
+            "AND (?2 IS NULL OR v.last_message_at < ?2 OR (v.last_message_at = ?2 AND v.id < ?3)) " +
+            "ORDER BY v.last_message_at DESC, v.id DESC LIMIT ?4)" +
+            ") inbox ORDER BY lastMessageAt DESC, conversationId DESC LIMIT ?4", nativeQuery = true)
+    List<InboxRowView> findInbox(Integer userId, LocalDateTime beforeAt, Integer beforeId, int limit);
+
+    @Query("SELECT c.id FROM Conversation c WHERE c.id > ?1 ORDER BY c.id")
+    List<Integer> findIdsAfter(Integer afterId, Pageable pageable);
+
+    boolean existsByLastMessageIdIsNull();
+
+    @Query(value = "UPDATE conversations v " +
+            "JOIN (SELECT conversation_id, MAX(seq) AS seq FROM chats GROUP BY conversation_id) m ON m.conversation_id = v.id " +
+            "JOIN chats c ON c.conversation_id = m.conversation_id AND c.seq = m.seq " +
+            "SET v.last_message_id = c.id, v.last_sender_id = c.sender_id, v.last_message_preview = LEFT(c.message, 140), " +
+            "v.last_message_at = c.timestamp WHERE v.last_message_id IS NULL", nativeQuery = true)
+    @Modifying
+    int backfillLastMessages();
+
+    // Legacy chats (no conversation yet): create their conversations, link them, and number them
+    // with seq <= 0 in timestamp order so they sort before anything sent since
+    @Query(value = "INSERT IGNORE INTO conversations (user_low_id, user_high_id, last_seq) " +
+            "SELECT DISTINCT LEAST(c.sender_id, c.receiver_id), GREATEST(c.sender_id, c.receiver_id), 0 " +
+            "FROM chats c WHERE c.conversation_id IS NULL", nativeQuery = true)
+    @Modifying
+    int insertLegacyConversations();
+
+    @Query(value = "UPDATE chats c JOIN (" +
+            "SELECT l.id, v.id AS conversation_id, " +
+            "ROW_NUMBER() OVER (PARTITION BY v.id ORDER BY l.timestamp, l.id) - COUNT(*) OVER (PARTITION BY v.id) AS seq " +
+            "FROM chats l JOIN conversations v ON v.user_low_id = LEAST(l.sender_id, l.receiver_id) " +
+            "AND v.user_high_id = GREATEST(l.sender_id, l.receiver_id) WHERE l.conversation_id IS NULL) n ON n.id = c.id " +
+            "SET c.conversation_id = n.conversation_id, c.seq = n.seq", nativeQuery = true)
+    @Modifying
+    int numberLegacyChats();
+}
@@ -0,0 +1,8 @@
+package com.medtrack.backend.repository;
+
+import java.time.LocalDate;
+
+public interface DailyCountView {
+    LocalDate getDay();
+    Long getTotal();
+}
@@ -0,0 +1,58 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.DailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyRollupRepository extends JpaRepository<DailyRollup, Long> {
+    @Query(value = "INSERT INTO daily_rollups (rollup_day, doctor_id, metric, bucket, total) VALUES (?1, ?2, ?3, ?4, ?5) " +
+            "ON DUPLICATE KEY UPDATE total = total + VALUES(total)", nativeQuery = true)
+    @Modifying
+    void increment(LocalDate day, Integer doctorId, String metric, Integer bucket, Long delta);
+
+    @Query("SELECT r.day AS day, SUM(r.total) AS total FROM DailyRollup r " +
+            "WHERE r.doctorId = ?1 AND r.metric = ?2 GROUP BY r.day")
+    List<DailyCountView> sumByDayForDoctor(Integer doctorId, DailyRollup.Metric metric);
+
+    @Query("SELECT r.day AS day, SUM(r.total) AS total FROM DailyRollup r " +
+            "WHERE r.metric = ?1 AND r.day BETWEEN ?2 AND ?3 GROUP BY r.day")
+    List<DailyCountView> sumByDay(DailyRollup.Metric metric, LocalDate from, LocalDate to);
+
+    @Query("SELECT u.id AS doctorId, u.firstName AS firstName, u.lastName AS lastName, SUM(r.total) AS total " +
+            "FROM DailyRollup r JOIN User u ON u.id = r.doctorId " +
+            "WHERE r.metric = ?1 AND r.day BETWEEN ?2 AND ?3 GROUP BY u.id, u.firstName, u.lastName")
+    List<DoctorCountView> sumByDoctor(DailyRollup.Metric metric, LocalDate from, LocalDate to);
+
+    @Query(value = "DELETE FROM daily_rollups", nativeQuery = true)
+    @Modifying
+    void deleteAllRollups();
+
+    @Query(value = "INSERT INTO daily_rollups (rollup_day, doctor_id, metric, bucket, total) " +
+            "SELECT DATE(s.slot_start_time), a.doctor_id, 'booked_slots', HOUR(s.slot_start_time), COUNT(*) " +
+            "FROM appointment_slots s JOIN availability a ON a.id = s.availability_id " +
+            "WHERE s.is_booked = true GROUP BY DATE(s.slot_start_time), a.doctor_id, HOUR(s.slot_start_time)", nativeQuery = true)
+    @Modifying
+    int backfillBookedSlots();
+
+    @Query(value = "INSERT INTO daily_rollups (rollup_day, doctor_id, metric, bucket, total) " +
+            "SELECT DATE(r.created_at), r.doctor_id, 'rating_count', 0, COUNT(*) " +
+            "FROM ratings r GROUP BY DATE(r.created_at), r.doctor_id", nativeQuery = true)
+    @Modifying
+    int backfillRatingCounts();
+
+    @Query(value = "INSERT INTO daily_rollups (rollup_day, doctor_id, metric, bucket, total) " +
+            "SELECT DATE(r.created_at), r.doctor_id, 'rating_sum', 0, SUM(r.rating) " +
+            "FROM ratings r GROUP BY DATE(r.created_at), r.doctor_id", nativeQuery = true)
+    @Modifying
+    int backfillRatingSums();
+
+    @Query(value = "INSERT INTO daily_rollups (rollup_day, doctor_id, metric, bucket, total) " +
+            "SELECT DATE(u.created_at), 0, 'registrations', 0, COUNT(*) " +
+            "FROM users u GROUP BY DATE(u.created_at)", nativeQuery = true)
+    @Modifying
+    int backfillRegistrations();
+}
@@ -0,0 +1,9 @@
+package com.medtrack.backend.repository;
+
+import java.time.LocalDate;
+
+public interface DailyVitalAverageView {
+    LocalDate getDay();
+    Double getPrimaryAvg();
+    Double getSecondaryAvg();
+}
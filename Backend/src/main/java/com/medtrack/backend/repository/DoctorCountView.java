@@ -0,0 +1,8 @@
+package com.medtrack.backend.repository;
+
+public interface DoctorCountView {
+    Integer getDoctorId();
+    String getFirstName();
+    String getLastName();
+    Long getTotal();
+}
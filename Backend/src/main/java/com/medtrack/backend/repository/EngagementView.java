@@ -0,0 +1,7 @@
+package com.medtrack.backend.repository;
+
+public interface EngagementView {
+    Integer getPatientId();
+    Number getAppointments();
+    Number getRatings();
+}
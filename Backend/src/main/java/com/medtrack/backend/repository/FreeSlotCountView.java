@@ -0,0 +1,10 @@
+package com.medtrack.backend.repository;
+
+import java.time.LocalDate;
+
+public interface FreeSlotCountView {
+    String getSpecialty();
+    String getLocation();
+    LocalDate getDate();
+    Long getFreeSlots();
+}
@@ -0,0 +1,6 @@
+package com.medtrack.backend.repository;
+
+public interface HourCountView {
+    Integer getHour();
+    Long getTotal();
+}
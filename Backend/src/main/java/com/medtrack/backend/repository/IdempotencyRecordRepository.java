@@ -0,0 +1,14 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < ?1")
+    @Modifying
+    int deleteByCreatedAtBefore(LocalDateTime cutoff);
+}
@@ -0,0 +1,12 @@
+package com.medtrack.backend.repository;
+
+import java.time.LocalDateTime;
+
+public interface InboxRowView {
+    Integer getConversationId();
+    Integer getPeerId();
+    Integer getLastSenderId();
+    String getLastMessagePreview();
+    LocalDateTime getLastMessageAt();
+    Long getLastSeq();
+}
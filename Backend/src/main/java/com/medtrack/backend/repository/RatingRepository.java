@@ -1,11 +1,18 @@
 package com.medtrack.backend.repository;
 
 import com.medtrack.backend.entity.Rating;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
 import java.util.List;
 
 public interface RatingRepository extends JpaRepository<Rating, Integer> {
     List<Rating> findByDoctorId(Integer doctorId);
     List<Rating> findByPatientId(Integer patientId);
 
+    @Query("SELECT r.id AS id, r.doctor.id AS doctorId, r.createdAt AS createdAt, r.rating AS rating " +
+            "FROM Rating r WHERE r.id > ?1 ORDER BY r.id")
+    List<RatingValueView> findRatingValuesAfter(Integer id, Pageable pageable);
+
 }
\ No newline at end of file
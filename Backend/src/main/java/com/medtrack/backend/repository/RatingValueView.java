@@ -0,0 +1,10 @@
+package com.medtrack.backend.repository;
+
+import java.time.LocalDateTime;
+
+public interface RatingValueView {
+    Integer getId();
+    Integer getDoctorId();
+    LocalDateTime getCreatedAt();
+    Integer getRating();
+}
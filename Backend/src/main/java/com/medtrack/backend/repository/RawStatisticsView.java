@@ -0,0 +1,11 @@
+package com.medtrack.backend.repository;
+
+import java.time.LocalDate;
+
+public interface RawStatisticsView {
+    Integer getId();
+    Integer getPatientId();
+    String getDataType();
+    String getValue();
+    LocalDate getDate();
+}
@@ -0,0 +1,17 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.ScheduleChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ScheduleChangeRepository extends JpaRepository<ScheduleChange, Long> {
+    @Query("SELECT c FROM ScheduleChange c WHERE c.doctorId = ?1 AND c.seq > ?2 ORDER BY c.seq ASC")
+    List<ScheduleChange> findChangesSince(Integer doctorId, Long seq, Pageable pageable);
+
+    @Query("SELECT MAX(c.seq) FROM ScheduleChange c WHERE c.doctorId = ?1")
+    Optional<Long> findLatestSeqByDoctorId(Integer doctorId);
+}
@@ -0,0 +1,23 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.ScheduleSequence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface ScheduleSequenceRepository extends JpaRepository<ScheduleSequence, Integer> {
+    // Starts above the doctor's existing changes, so sync tokens issued before the row existed stay valid
+    @Query(value = "INSERT IGNORE INTO schedule_sequence (id, current_value) " +
+            "SELECT ?1, COALESCE(MAX(c.seq), 0) FROM schedule_changes c WHERE c.doctor_id = ?1", nativeQuery = true)
+    @Modifying
+    void insertIfAbsent(Integer doctorId);
+
+    @Query("UPDATE ScheduleSequence s SET s.currentValue = s.currentValue + 1 WHERE s.id = ?1")
+    @Modifying
+    int increment(Integer id);
+
+    @Query("SELECT s.currentValue FROM ScheduleSequence s WHERE s.id = ?1")
+    Optional<Long> findCurrentValue(Integer id);
+}
@@ -0,0 +1,26 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.AppointmentSlot;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Flat row of a doctor's schedule: one availability joined with one of its slots and the booked
+ * patient's name. Slot columns are null for an availability without slots.
+ */
+public interface ScheduleSlotView {
+    Integer getAvailabilityId();
+    LocalDate getDate();
+    LocalTime getStartTime();
+    LocalTime getEndTime();
+    Integer getSlotId();
+    LocalDateTime getSlotStartTime();
+    LocalDateTime getSlotEndTime();
+    Boolean getBooked();
+    AppointmentSlot.Status getStatus();
+    Integer getPatientId();
+    String getPatientFirstName();
+    String getPatientLastName();
+}
@@ -0,0 +1,29 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.StatisticsDailyAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface StatisticsDailyAggregateRepository extends JpaRepository<StatisticsDailyAggregate, Long> {
+    List<StatisticsDailyAggregate> findByPatientIdOrderByDayAsc(Integer patientId);
+
+    // Merges a partial aggregate into the stored one; COALESCE keeps LEAST/GREATEST from returning NULL
+    @Query(value = "INSERT INTO statistics_daily_aggregates (patient_id, data_type, aggregate_day, count, primary_min, " +
+            "primary_max, primary_sum, secondary_count, secondary_min, secondary_max, secondary_sum) " +
+            "VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?9, ?10, ?11) ON DUPLICATE KEY UPDATE " +
+            "count = count + VALUES(count), " +
+            "primary_min = LEAST(primary_min, VALUES(primary_min)), " +
+            "primary_max = GREATEST(primary_max, VALUES(primary_max)), " +
+            "primary_sum = primary_sum + VALUES(primary_sum), " +
+            "secondary_count = secondary_count + VALUES(secondary_count), " +
+            "secondary_min = LEAST(COALESCE(secondary_min, VALUES(secondary_min)), COALESCE(VALUES(secondary_min), secondary_min)), " +
+            "secondary_max = GREATEST(COALESCE(secondary_max, VALUES(secondary_max)), COALESCE(VALUES(secondary_max), secondary_max)), " +
+            "secondary_sum = COALESCE(secondary_sum, 0) + COALESCE(VALUES(secondary_sum), 0)", nativeQuery = true)
+    @Modifying
+    void merge(Integer patientId, String dataType, LocalDate day, Long count, Double primaryMin, Double primaryMax,
+               Double primarySum, Long secondaryCount, Double secondaryMin, Double secondaryMax, Double secondarySum);
+}
@@ -1,7 +1,9 @@
 package com.medtrack.backend.repository;
 
 import com.medtrack.backend.entity.Statistics;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -13,11 +15,49 @@ public interface StatisticsRepository extends JpaRepository<Statistics, Integer>
 
     List<Statistics> findByDataType(String dataType);
 
-    //  @Query(value = "SELECT s.* FROM statistics s " +
-    //     "JOIN statistics_metadata m ON s.id = m.statistics_id " +
-    //     "WHERE m.meta_key = ?1 AND m.meta_value = ?2",
-    //     nativeQuery = true)
-    // List<Statistics> findByMetadata(String key, String value);
+    // One page of a metadata pair's posting list after the cursor, read in id order straight from idx_statistics_metadata_kv
+    @Query(value = "SELECT m.statistics_id FROM statistics_metadata m " +
+            "WHERE m.meta_key = ?1 AND m.meta_value = ?2 AND m.statistics_id > ?3 ORDER BY m.statistics_id LIMIT ?4",
+            nativeQuery = true)
+    List<Integer> findIdsByMetadata(String key, String value, Integer afterId, int limit);
+
+    // The given ids that also carry the pair: one index probe per id
+    @Query(value = "SELECT m.statistics_id FROM statistics_metadata m " +
+            "WHERE m.meta_key = ?1 AND m.meta_value = ?2 AND m.statistics_id IN ?3 ORDER BY m.statistics_id",
+            nativeQuery = true)
+    List<Integer> findIdsByMetadataIn(String key, String value, List<Integer> ids);
+
+    // Posting list size after the cursor, counted no further than cap
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM statistics_metadata m " +
+            "WHERE m.meta_key = ?1 AND m.meta_value = ?2 AND m.statistics_id > ?3 LIMIT ?4) p", nativeQuery = true)
+    long countIdsByMetadata(String key, String value, Integer afterId, int cap);
+
+    // ?5 limits the rows to one patient, ?6 to the patients of one doctor; null means no restriction
+    @Query("SELECT s FROM Statistics s WHERE s.id IN ?1 " +
+            "AND (?2 IS NULL OR s.dataType = ?2) AND (?3 IS NULL OR s.date >= ?3) AND (?4 IS NULL OR s.date <= ?4) " +
+            "AND (?5 IS NULL OR s.patient.id = ?5) " +
+            "AND (?6 IS NULL OR EXISTS (SELECT a.id FROM Appointment a WHERE a.doctor.id = ?6 AND a.patient = s.patient)) " +
+            "ORDER BY s.id")
+    List<Statistics> findByIdInFiltered(List<Integer> ids, String dataType, LocalDate startDate, LocalDate endDate,
+                                        Integer patientId, Integer doctorId);
 
     List<Statistics> findByDataTypeAndDateBetween(String dataType, LocalDate startDate, LocalDate endDate);
+
+    // Rows after the cursor that have not been copied into vital_readings yet
+    @Query("SELECT s FROM Statistics s WHERE s.id > ?1 AND NOT EXISTS " +
+            "(SELECT v.id FROM VitalReading v WHERE v.sourceStatisticsId = s.id) ORDER BY s.id")
+    List<Statistics> findUncopiedAfter(Integer afterId, Pageable pageable);
+
+    // Rows without a patient cannot be keyed into an aggregate, so compaction leaves them raw
+    @Query("SELECT s.id AS id, s.patient.id AS patientId, s.dataType AS dataType, s.value AS value, s.date AS date " +
+            "FROM Statistics s WHERE s.date < ?1 AND s.id > ?2 AND s.patient IS NOT NULL ORDER BY s.id")
+    List<RawStatisticsView> findRawBefore(LocalDate cutoff, Integer afterId, Pageable pageable);
+
+    @Query(value = "DELETE FROM statistics_metadata WHERE statistics_id IN ?1", nativeQuery = true)
+    @Modifying
+    void deleteMetadataByStatisticsIds(List<Integer> ids);
+
+    @Query("DELETE FROM Statistics s WHERE s.id IN ?1")
+    @Modifying
+    void deleteByIds(List<Integer> ids);
 }
\ No newline at end of file
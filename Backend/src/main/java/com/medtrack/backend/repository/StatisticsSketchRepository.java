@@ -0,0 +1,33 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.StatisticsSketch;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface StatisticsSketchRepository extends JpaRepository<StatisticsSketch, Long> {
+    @Query(value = "INSERT IGNORE INTO statistics_sketches (doctor_id, metric, sketch_month, total, data) " +
+            "VALUES (?1, ?2, ?3, 0, ?4)", nativeQuery = true)
+    @Modifying
+    void insertIfAbsent(Integer doctorId, String metric, LocalDate month, byte[] emptySketch);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM StatisticsSketch s WHERE s.doctorId = ?1 AND s.metric = ?2 AND s.month = ?3")
+    Optional<StatisticsSketch> findForUpdate(Integer doctorId, StatisticsSketch.Metric metric, LocalDate month);
+
+    @Query("SELECT s FROM StatisticsSketch s WHERE s.metric = ?1 AND s.month BETWEEN ?2 AND ?3")
+    List<StatisticsSketch> findByMetricBetween(StatisticsSketch.Metric metric, LocalDate from, LocalDate to);
+
+    @Query("SELECT s FROM StatisticsSketch s WHERE s.doctorId = ?1 AND s.metric = ?2 AND s.month BETWEEN ?3 AND ?4")
+    List<StatisticsSketch> findByDoctorAndMetricBetween(Integer doctorId, StatisticsSketch.Metric metric, LocalDate from, LocalDate to);
+
+    @Query(value = "DELETE FROM statistics_sketches", nativeQuery = true)
+    @Modifying
+    void deleteAllSketches();
+}
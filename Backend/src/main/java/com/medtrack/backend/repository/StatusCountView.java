@@ -0,0 +1,8 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.AppointmentSlot;
+
+public interface StatusCountView {
+    AppointmentSlot.Status getStatus();
+    Long getTotal();
+}
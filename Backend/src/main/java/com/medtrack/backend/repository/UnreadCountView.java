@@ -0,0 +1,7 @@
+package com.medtrack.backend.repository;
+
+public interface UnreadCountView {
+    Integer getPeerId();
+    Long getUnread();
+    Long getMaxSeq();
+}
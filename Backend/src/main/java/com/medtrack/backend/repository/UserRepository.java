@@ -10,6 +10,7 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     Optional<User> findByEmail(String email);
     Optional<User> findByUsername(String username);
     List<User> findByRole(User.Role role);
+    long countByRole(User.Role role);
     boolean existsById(Integer id);
     List<User> findByRoleAndUsernameContainingAndSpecialtyContainingAndLocationContaining(
             User.Role role, String username, String specialty, String location);
@@ -0,0 +1,12 @@
+package com.medtrack.backend.repository;
+
+public interface VitalBucketView {
+    Number getBucket();
+    Number getSamples();
+    Number getPrimaryMin();
+    Number getPrimaryMax();
+    Number getPrimaryAvg();
+    Number getSecondaryMin();
+    Number getSecondaryMax();
+    Number getSecondaryAvg();
+}
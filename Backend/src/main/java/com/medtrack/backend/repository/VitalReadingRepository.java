@@ -0,0 +1,31 @@
+package com.medtrack.backend.repository;
+
+import com.medtrack.backend.entity.VitalReading;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface VitalReadingRepository extends JpaRepository<VitalReading, Long> {
+    @Query("SELECT v FROM VitalReading v WHERE v.recordedAt >= ?1 AND v.id > ?2 AND v.id <= ?3 ORDER BY v.id")
+    List<VitalReading> findRecordedSince(LocalDateTime since, Long afterId, Long maxId, Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(v.id), 0) FROM VitalReading v")
+    Long findMaxId();
+
+    @Query(value = "SELECT FLOOR(TIMESTAMPDIFF(SECOND, ?3, v.recorded_at) / ?5) AS bucket, COUNT(*) AS samples, " +
+            "MIN(v.primary_value) AS primaryMin, MAX(v.primary_value) AS primaryMax, AVG(v.primary_value) AS primaryAvg, " +
+            "MIN(v.secondary_value) AS secondaryMin, MAX(v.secondary_value) AS secondaryMax, AVG(v.secondary_value) AS secondaryAvg " +
+            "FROM vital_readings v " +
+            "WHERE v.patient_id = ?1 AND v.data_type = ?2 AND v.recorded_at >= ?3 AND v.recorded_at < ?4 " +
+            "GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<VitalBucketView> aggregateBuckets(Integer patientId, String dataType, LocalDateTime from, LocalDateTime to,
+                                           long bucketSeconds);
+
+    @Query("SELECT CAST(v.recordedAt AS LocalDate) AS day, AVG(v.primaryValue) AS primaryAvg, AVG(v.secondaryValue) AS secondaryAvg " +
+            "FROM VitalReading v WHERE v.dataType = ?1 AND v.recordedAt >= ?2 AND v.recordedAt < ?3 " +
+            "GROUP BY CAST(v.recordedAt AS LocalDate)")
+    List<DailyVitalAverageView> averageByDay(String dataType, LocalDateTime from, LocalDateTime to);
+}
@@ -2,6 +2,7 @@ package com.medtrack.backend.service;
 
 import com.medtrack.backend.entity.Appointment;
 import com.medtrack.backend.entity.AppointmentSlot;
+import com.medtrack.backend.entity.ScheduleChange;
 import com.medtrack.backend.entity.User;
 import com.medtrack.backend.repository.AppointmentRepository;
 import com.medtrack.backend.repository.AppointmentSlotRepository;
@@ -16,11 +17,21 @@ import java.util.List;
 public class AppointmentService {
     private final AppointmentRepository appointmentRepository;
     private final AppointmentSlotRepository appointmentSlotRepository;
+    private final ScheduleSyncService scheduleSyncService;
+    private final FreeSlotHeatmapService freeSlotHeatmapService;
+    private final RollupService rollupService;
+    private final PercentileService percentileService;
 
     @Autowired
-    public AppointmentService(AppointmentRepository appointmentRepository, AppointmentSlotRepository appointmentSlotRepository) {
+    public AppointmentService(AppointmentRepository appointmentRepository, AppointmentSlotRepository appointmentSlotRepository,
+                              ScheduleSyncService scheduleSyncService, FreeSlotHeatmapService freeSlotHeatmapService,
+                              RollupService rollupService, PercentileService percentileService) {
         this.appointmentRepository = appointmentRepository;
         this.appointmentSlotRepository = appointmentSlotRepository;
+        this.scheduleSyncService = scheduleSyncService;
+        this.freeSlotHeatmapService = freeSlotHeatmapService;
+        this.rollupService = rollupService;
+        this.percentileService = percentileService;
     }
 
     @Transactional
@@ -42,7 +53,13 @@ public class AppointmentService {
         appointmentSlotRepository.updateSlot(slot.getId(), true, appointment.getPatient(), AppointmentSlot.Status.approved, slot.getCreatedAt());
 
         // Save appointment
-        return appointmentRepository.save(appointment);
+        Appointment saved = appointmentRepository.save(appointment);
+        recordChange(saved, ScheduleChange.ChangeType.created);
+        freeSlotHeatmapService.adjust(appointment.getDoctor(), slot.getSlotStartTime().toLocalDate(), -1);
+        rollupService.recordBooking(appointment.getDoctor().getId(), slot.getSlotStartTime(), 1);
+        percentileService.recordBooking(appointment.getDoctor().getId(), slot.getSlotStartTime(), slot.getSlotEndTime(),
+                slot.getCreatedAt(), 1);
+        return saved;
     }
 
     @Transactional
@@ -55,7 +72,9 @@ public class AppointmentService {
             slot.setStatus(AppointmentSlot.Status.approved);
             appointmentSlotRepository.updateSlot(slot.getId(), slot.isBooked(), slot.getPatient(), AppointmentSlot.Status.approved, slot.getCreatedAt());
         }
-        return appointmentRepository.save(appointment);
+        Appointment saved = appointmentRepository.save(appointment);
+        recordChange(saved, ScheduleChange.ChangeType.modified);
+        return saved;
     }
 
     public List<Appointment> getAppointmentsByPatient(Integer patientId) {
@@ -77,13 +96,21 @@ public class AppointmentService {
         // Re-mark slot as available
         AppointmentSlot slot = appointment.getSlot();
         if (slot != null) {
+            LocalDateTime bookedAt = slot.getCreatedAt();
             slot.setBooked(false);
             slot.setPatient(null);
             slot.setStatus(null);
             slot.setCreatedAt(null);
             appointmentSlotRepository.updateSlot(slot.getId(), false, null, null, null);
+            if (slot.getSlotStartTime() != null) {
+                freeSlotHeatmapService.adjust(appointment.getDoctor(), slot.getSlotStartTime().toLocalDate(), 1);
+                rollupService.recordBooking(appointment.getDoctor().getId(), slot.getSlotStartTime(), -1);
+                percentileService.recordBooking(appointment.getDoctor().getId(), slot.getSlotStartTime(), slot.getSlotEndTime(),
+                        bookedAt, -1);
+            }
         }
 
+        recordChange(appointment, ScheduleChange.ChangeType.cancelled);
         appointmentRepository.deleteById(id);
     }
 
@@ -91,4 +118,9 @@ public class AppointmentService {
         return appointmentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Appointment not found"));
     }
+
+    private void recordChange(Appointment appointment, ScheduleChange.ChangeType changeType) {
+        Integer doctorId = appointment.getDoctor() != null ? appointment.getDoctor().getId() : null;
+        scheduleSyncService.recordChange(doctorId, ScheduleChange.EntityType.appointment, appointment.getId(), changeType);
+    }
 }
\ No newline at end of file
@@ -3,8 +3,10 @@ package com.medtrack.backend.service;
 import com.medtrack.backend.entity.User;
 import com.medtrack.backend.repository.UserRepository;
 import com.medtrack.backend.security.JwtUtils;
+import com.medtrack.backend.util.TransactionUtils;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -15,15 +17,18 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
     private final JwtUtils jwtUtils;
+    private final RollupService rollupService;
 
     public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder,
-                       EmailService emailService, JwtUtils jwtUtils) {
+                       EmailService emailService, JwtUtils jwtUtils, RollupService rollupService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.emailService = emailService;
         this.jwtUtils = jwtUtils;
+        this.rollupService = rollupService;
     }
 
+    @Transactional
     public User registerUser(String username, String password, String email, String role) {
         System.out.println("Registering user: username=" + username + ", email=" + email + ", role=" + role);
         if (userRepository.findByEmail(email).isPresent() || userRepository.findByUsername(username).isPresent()) {
@@ -39,7 +44,9 @@ public class AuthService {
         user.setActive(false);
 
         userRepository.save(user);
-        emailService.sendVerificationEmail(email, user.getVerificationCode());
+        rollupService.recordRegistration(user.getCreatedAt());
+        // Sent once the user and the rollup row are committed, so no lock is held over SMTP
+        TransactionUtils.afterCommit(() -> emailService.sendVerificationEmail(email, user.getVerificationCode()));
         System.out.println("User saved with verification code: " + user.getVerificationCode());
         return user;
     }
@@ -2,9 +2,11 @@ package com.medtrack.backend.service;
 
 import com.medtrack.backend.entity.Availability;
 import com.medtrack.backend.entity.AppointmentSlot;
+import com.medtrack.backend.entity.ScheduleChange;
 import com.medtrack.backend.entity.User;
 import com.medtrack.backend.repository.AppointmentSlotRepository;
 import com.medtrack.backend.repository.AvailabilityRepository;
+import com.medtrack.backend.repository.ScheduleSlotView;
 import com.medtrack.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -16,19 +18,34 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class AvailabilityService {
+    private static final int MAX_SCHEDULE_DAYS = 31;
+
     private final AvailabilityRepository availabilityRepository;
     private final AppointmentSlotRepository appointmentSlotRepository;
     private final UserRepository userRepository;
+    private final ScheduleSyncService scheduleSyncService;
+    private final FreeSlotHeatmapService freeSlotHeatmapService;
+    private final RollupService rollupService;
+    private final PercentileService percentileService;
 
     @Autowired
-    public AvailabilityService(AvailabilityRepository availabilityRepository, AppointmentSlotRepository appointmentSlotRepository, UserRepository userRepository) {
+    public AvailabilityService(AvailabilityRepository availabilityRepository, AppointmentSlotRepository appointmentSlotRepository,
+                               UserRepository userRepository, ScheduleSyncService scheduleSyncService,
+                               FreeSlotHeatmapService freeSlotHeatmapService, RollupService rollupService,
+                               PercentileService percentileService) {
         this.availabilityRepository = availabilityRepository;
         this.appointmentSlotRepository = appointmentSlotRepository;
         this.userRepository = userRepository;
+        this.scheduleSyncService = scheduleSyncService;
+        this.freeSlotHeatmapService = freeSlotHeatmapService;
+        this.rollupService = rollupService;
+        this.percentileService = percentileService;
     }
 
     @Transactional
@@ -36,7 +53,10 @@ public class AvailabilityService {
         setDoctorFromAuthentication(availability);
         validateAvailability(availability);
         generateAppointmentSlots(availability);
-        return availabilityRepository.save(availability);
+        Availability saved = availabilityRepository.save(availability);
+        recordChange(saved, ScheduleChange.ChangeType.created);
+        freeSlotHeatmapService.adjust(saved.getDoctor(), saved.getDate(), countFreeSlots(saved));
+        return saved;
     }
 
     @Transactional
@@ -51,7 +71,12 @@ public class AvailabilityService {
             generateAppointmentSlots(avail);
             savedAvailabilities.add(avail);
         }
-        return availabilityRepository.saveAll(savedAvailabilities);
+        List<Availability> saved = availabilityRepository.saveAll(savedAvailabilities);
+        for (Availability avail : saved) {
+            recordChange(avail, ScheduleChange.ChangeType.created);
+            freeSlotHeatmapService.adjust(avail.getDoctor(), avail.getDate(), countFreeSlots(avail));
+        }
+        return saved;
     }
 
     public List<Availability> getAvailabilityByDoctor(Integer doctorId) {
@@ -72,6 +97,55 @@ public class AvailabilityService {
                 .toList();
     }
 
+    /**
+     * Builds a doctor's schedule for a date range from a single projection query. Availabilities are
+     * returned in time order, each with its slots and the booked patient's name.
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getSchedule(Integer doctorId, LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("Invalid date range: " + from + " to " + to);
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_SCHEDULE_DAYS) {
+            throw new IllegalArgumentException("Date range cannot exceed " + MAX_SCHEDULE_DAYS + " days");
+        }
+
+        List<ScheduleSlotView> rows = availabilityRepository.findScheduleByDoctorIdAndDateBetween(doctorId, from, to);
+        List<Map<String, Object>> schedule = new ArrayList<>();
+        Integer currentAvailabilityId = null;
+        List<Map<String, Object>> currentSlots = null;
+        for (ScheduleSlotView row : rows) {
+            // Rows are ordered by availability, so a new id starts a new block
+            if (!row.getAvailabilityId().equals(currentAvailabilityId)) {
+                currentAvailabilityId = row.getAvailabilityId();
+                currentSlots = new ArrayList<>();
+                Map<String, Object> availability = new HashMap<>();
+                availability.put("id", row.getAvailabilityId());
+                availability.put("date", row.getDate());
+                availability.put("startTime", row.getStartTime());
+                availability.put("endTime", row.getEndTime());
+                availability.put("slots", currentSlots);
+                schedule.add(availability);
+            }
+            if (row.getSlotId() == null) {
+                continue;
+            }
+            Map<String, Object> slot = new HashMap<>();
+            slot.put("id", row.getSlotId());
+            slot.put("start", row.getSlotStartTime());
+            slot.put("end", row.getSlotEndTime());
+            slot.put("booked", Boolean.TRUE.equals(row.getBooked()));
+            slot.put("status", row.getStatus());
+            if (row.getPatientId() != null) {
+                slot.put("patientId", row.getPatientId());
+                slot.put("patientName", ((row.getPatientFirstName() != null ? row.getPatientFirstName() : "") + " "
+                        + (row.getPatientLastName() != null ? row.getPatientLastName() : "")).trim());
+            }
+            currentSlots.add(slot);
+        }
+        return schedule;
+    }
+
     @Transactional
     public AppointmentSlot bookSlot(Integer slotId, Integer patientId) {
         AppointmentSlot slot = appointmentSlotRepository.findSlotById(slotId)
@@ -86,6 +160,11 @@ public class AvailabilityService {
         slot.setStatus(AppointmentSlot.Status.pending);
         slot.setCreatedAt(LocalDateTime.now());
         appointmentSlotRepository.updateSlot(slot.getId(), true, patient, AppointmentSlot.Status.pending, slot.getCreatedAt());
+        recordChange(slot.getAvailability(), ScheduleChange.ChangeType.modified);
+        freeSlotHeatmapService.adjust(slot.getAvailability().getDoctor(), slot.getSlotStartTime().toLocalDate(), -1);
+        rollupService.recordBooking(slot.getAvailability().getDoctor().getId(), slot.getSlotStartTime(), 1);
+        percentileService.recordBooking(slot.getAvailability().getDoctor().getId(), slot.getSlotStartTime(),
+                slot.getSlotEndTime(), slot.getCreatedAt(), 1);
         return slot;
     }
 
@@ -96,19 +175,32 @@ public class AvailabilityService {
         }
         Availability existing = availabilityRepository.findById(availability.getId())
                 .orElseThrow(() -> new IllegalArgumentException("Availability not found: " + availability.getId()));
+        User previousDoctor = existing.getDoctor();
+        LocalDate previousDate = existing.getDate();
+        int previousFreeSlots = countFreeSlots(existing);
         existing.setDate(availability.getDate());
         existing.setStartTime(availability.getStartTime());
         existing.setEndTime(availability.getEndTime());
         existing.setVersion(availability.getVersion());
         setDoctorFromAuthentication(existing);
         validateAvailability(existing);
+        releaseBookedSlots(existing, previousDoctor);
         existing.getAppointmentSlots().clear();
         generateAppointmentSlots(existing);
-        return availabilityRepository.save(existing);
+        Availability saved = availabilityRepository.save(existing);
+        recordChange(saved, ScheduleChange.ChangeType.modified);
+        freeSlotHeatmapService.adjust(previousDoctor, previousDate, -previousFreeSlots);
+        freeSlotHeatmapService.adjust(saved.getDoctor(), saved.getDate(), countFreeSlots(saved));
+        return saved;
     }
 
     @Transactional
     public void deleteAvailability(Integer id) {
+        availabilityRepository.findById(id).ifPresent(availability -> {
+            releaseBookedSlots(availability, availability.getDoctor());
+            recordChange(availability, ScheduleChange.ChangeType.cancelled);
+            freeSlotHeatmapService.adjust(availability.getDoctor(), availability.getDate(), -countFreeSlots(availability));
+        });
         availabilityRepository.deleteById(id);
     }
 
@@ -156,6 +248,35 @@ public class AvailabilityService {
         availability.setAppointmentSlots(slots);
     }
 
+    // Booked slots about to be discarded no longer count towards the doctor's rollups and sketches
+    private void releaseBookedSlots(Availability availability, User doctor) {
+        if (availability.getAppointmentSlots() == null || doctor == null) {
+            return;
+        }
+        for (AppointmentSlot slot : availability.getAppointmentSlots()) {
+            if (slot.isBooked()) {
+                rollupService.recordBooking(doctor.getId(), slot.getSlotStartTime(), -1);
+                percentileService.recordBooking(doctor.getId(), slot.getSlotStartTime(), slot.getSlotEndTime(),
+                        slot.getCreatedAt(), -1);
+            }
+        }
+    }
+
+    private int countFreeSlots(Availability availability) {
+        if (availability.getAppointmentSlots() == null) {
+            return 0;
+        }
+        return (int) availability.getAppointmentSlots().stream().filter(slot -> !slot.isBooked()).count();
+    }
+
+    private void recordChange(Availability availability, ScheduleChange.ChangeType changeType) {
+        if (availability == null || availability.getDoctor() == null) {
+            return;
+        }
+        scheduleSyncService.recordChange(availability.getDoctor().getId(), ScheduleChange.EntityType.availability,
+                availability.getId(), changeType);
+    }
+
     private void setDoctorFromAuthentication(Availability availability) {
         String username = (String) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         User doctor = userRepository.findByUsername(username)
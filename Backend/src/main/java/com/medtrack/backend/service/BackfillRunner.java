@@ -0,0 +1,42 @@
+package com.medtrack.backend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off data backfills triggered by startup arguments, e.g.
+ * {@code ./mvnw spring-boot:run -Dspring-boot.run.arguments=--backfill-rollups}.
+ * <ul>
+ *     <li>{@code --backfill-rollups} rebuilds the daily statistics rollups</li>
+ *     <li>{@code --backfill-vitals} copies legacy Statistics rows into the typed vitals series</li>
+ *     <li>{@code --backfill-sketches} rebuilds the per-doctor monthly percentile sketches</li>
+ * </ul>
+ */
+@Component
+public class BackfillRunner implements ApplicationRunner {
+    private final RollupService rollupService;
+    private final VitalsService vitalsService;
+    private final PercentileService percentileService;
+
+    @Autowired
+    public BackfillRunner(RollupService rollupService, VitalsService vitalsService, PercentileService percentileService) {
+        this.rollupService = rollupService;
+        this.vitalsService = vitalsService;
+        this.percentileService = percentileService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption("backfill-rollups")) {
+            rollupService.backfill();
+        }
+        if (args.containsOption("backfill-vitals")) {
+            vitalsService.backfillFromStatistics();
+        }
+        if (args.containsOption("backfill-sketches")) {
+            percentileService.backfill();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.Chat;
+import com.medtrack.backend.entity.User;
+import com.medtrack.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures chat send throughput against the configured database, e.g.
+ * {@code ./mvnw spring-boot:run -Dspring-boot.run.arguments="--benchmark-chat=20000 --benchmark-chat-users=3,7"}.
+ * Messages are really saved between the two users, so point it at a scratch database. Run it with
+ * chat.write-behind.enabled on and off to compare; with write-behind the rate at which messages
+ * reach chats is reported as well as the acknowledgement rate.
+ * <ul>
+ *     <li>{@code --benchmark-chat=<messages>} number of messages to send</li>
+ *     <li>{@code --benchmark-chat-users=<senderId>,<receiverId>} the users to chat between</li>
+ *     <li>{@code --benchmark-chat-threads=<n>} concurrent senders, 32 by default</li>
+ * </ul>
+ */
+@Component
+public class ChatBenchmarkRunner implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(ChatBenchmarkRunner.class);
+
+    private final ChatService chatService;
+    private final ChatWriteBehindService chatWriteBehindService;
+    private final UserRepository userRepository;
+
+    @Autowired
+    public ChatBenchmarkRunner(ChatService chatService, ChatWriteBehindService chatWriteBehindService,
+                               UserRepository userRepository) {
+        this.chatService = chatService;
+        this.chatWriteBehindService = chatWriteBehindService;
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!args.containsOption("benchmark-chat")) {
+            return;
+        }
+        int messages = Integer.parseInt(args.getOptionValues("benchmark-chat").get(0));
+        int threads = args.containsOption("benchmark-chat-threads")
+                ? Integer.parseInt(args.getOptionValues("benchmark-chat-threads").get(0)) : 32;
+        if (!args.containsOption("benchmark-chat-users")) {
+            throw new IllegalArgumentException("--benchmark-chat-users=<senderId>,<receiverId> is required");
+        }
+        String[] userIds = args.getOptionValues("benchmark-chat-users").get(0).split(",");
+        User sender = userRepository.findById(Integer.parseInt(userIds[0].trim()))
+                .orElseThrow(() -> new IllegalArgumentException("Sender not found with ID: " + userIds[0]));
+        User receiver = userRepository.findById(Integer.parseInt(userIds[1].trim()))
+                .orElseThrow(() -> new IllegalArgumentException("Receiver not found with ID: " + userIds[1]));
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> senders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int share = messages / threads + (t < messages % threads ? 1 : 0);
+                int thread = t;
+                senders.add(executor.submit(() -> {
+                    for (int i = 0; i < share; i++) {
+                        Chat chat = new Chat();
+                        chat.setSender(sender);
+                        chat.setReceiver(receiver);
+                        chat.setMessage("Benchmark message " + thread + "-" + i);
+                        chat.setTimestamp(LocalDateTime.now());
+                        chatService.sendMessage(chat);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : senders) {
+                future.get();
+            }
+        }
+        long acknowledged = System.nanoTime();
+        while (chatWriteBehindService.getPendingCount() > 0) {
+            Thread.sleep(10);
+        }
+        long persisted = System.nanoTime();
+
+        logger.info("Chat benchmark ({}, {} senders): {} messages acknowledged in {} ms, {} messages/s",
+                chatWriteBehindService.isEnabled() ? "write-behind" : "synchronous", threads, messages,
+                (acknowledged - start) / 1_000_000, rate(messages, acknowledged - start));
+        if (chatWriteBehindService.isEnabled()) {
+            // The last drained batch may still be committing, so this is a close upper bound
+            logger.info("Chat benchmark: {} messages drained to chats in {} ms, {} messages/s",
+                    messages, (persisted - start) / 1_000_000, rate(messages, persisted - start));
+        }
+    }
+
+    private static long rate(int messages, long nanos) {
+        return nanos == 0 ? 0 : messages * 1_000_000_000L / nanos;
+    }
+}
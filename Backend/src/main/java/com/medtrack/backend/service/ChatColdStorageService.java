@@ -0,0 +1,306 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.Chat;
+import com.medtrack.backend.entity.ChatColdMessageId;
+import com.medtrack.backend.entity.ChatColdSegment;
+import com.medtrack.backend.entity.ChatReadWatermark;
+import com.medtrack.backend.entity.Conversation;
+import com.medtrack.backend.entity.User;
+import com.medtrack.backend.repository.ChatColdMessageIdRepository;
+import com.medtrack.backend.repository.ChatColdSegmentRepository;
+import com.medtrack.backend.repository.ChatReadWatermarkRepository;
+import com.medtrack.backend.repository.ChatRepository;
+import com.medtrack.backend.repository.ConversationRepository;
+import com.medtrack.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Moves chat messages older than chat.tiering.days out of chats into compressed per-conversation
+ * segments in chat_cold_segments, and reads them back for conversation pages and search results.
+ * Only a seq prefix of each conversation is moved, and only messages their receiver has read, so
+ * paging stays "hot rows, then cold segments below them" and unread counts never need cold data.
+ * Each chunk is appended to the conversation's newest segment (or starts a new one once that is
+ * full) and deleted from chats in the same transaction.
+ */
+@Service
+public class ChatColdStorageService {
+    private static final Logger logger = LoggerFactory.getLogger(ChatColdStorageService.class);
+
+    private static final int CONVERSATION_PAGE_SIZE = 1000;
+    private static final int SEGMENT_PAGE_SIZE = 100;
+
+    private final ChatRepository chatRepository;
+    private final ChatColdSegmentRepository chatColdSegmentRepository;
+    private final ChatColdMessageIdRepository chatColdMessageIdRepository;
+    private final ChatReadWatermarkRepository chatReadWatermarkRepository;
+    private final ConversationRepository conversationRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int tieringDays;
+    private final int chunkSize;
+
+    public record ColdMessage(Integer id, Integer conversationId, long seq, Integer senderId, Integer receiverId,
+                              LocalDateTime timestamp, String message) {
+    }
+
+    @Autowired
+    public ChatColdStorageService(ChatRepository chatRepository, ChatColdSegmentRepository chatColdSegmentRepository,
+                                  ChatColdMessageIdRepository chatColdMessageIdRepository,
+                                  ChatReadWatermarkRepository chatReadWatermarkRepository,
+                                  ConversationRepository conversationRepository, UserRepository userRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${chat.tiering.days:0}") int tieringDays,
+                                  @Value("${chat.tiering.chunk-size:500}") int chunkSize) {
+        this.chatRepository = chatRepository;
+        this.chatColdSegmentRepository = chatColdSegmentRepository;
+        this.chatColdMessageIdRepository = chatColdMessageIdRepository;
+        this.chatReadWatermarkRepository = chatReadWatermarkRepository;
+        this.conversationRepository = conversationRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tieringDays = tieringDays;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "0 0 1 * * ?") // Daily, after statistics retention
+    public void tierOldMessages() {
+        if (tieringDays <= 0) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDate.now().minusDays(tieringDays).atStartOfDay();
+        logger.info("Moving chat messages sent before {} to cold storage", cutoff);
+        int lastId = 0;
+        long moved = 0;
+        while (true) {
+            List<Integer> conversationIds = conversationRepository.findIdsAfter(lastId, PageRequest.of(0, CONVERSATION_PAGE_SIZE));
+            if (conversationIds.isEmpty()) {
+                break;
+            }
+            for (Integer conversationId : conversationIds) {
+                Integer chunk;
+                do {
+                    chunk = transactionTemplate.execute(status -> tierChunk(conversationId, cutoff));
+                    moved += chunk != null ? chunk : 0;
+                } while (chunk != null && chunk == chunkSize);
+            }
+            lastId = conversationIds.get(conversationIds.size() - 1);
+        }
+        logger.info("Moved {} chat messages sent before {} to cold storage", moved, cutoff);
+    }
+
+    /**
+     * @return how many of the conversation's oldest hot messages were moved; less than the chunk
+     * size once it reaches a message that is too recent or still unread
+     */
+    private int tierChunk(Integer conversationId, LocalDateTime cutoff) {
+        List<Chat> oldest = chatRepository.findOldestInConversation(conversationId, PageRequest.of(0, chunkSize));
+        Map<Integer, Long> watermarks = new HashMap<>();
+        for (ChatReadWatermark watermark : chatReadWatermarkRepository.findByConversationId(conversationId)) {
+            watermarks.put(watermark.getUserId(), watermark.getLastReadSeq());
+        }
+        List<Chat> movable = new ArrayList<>();
+        for (Chat chat : oldest) {
+            Long watermark = watermarks.get(chat.getReceiver().getId());
+            if (chat.getTimestamp() == null || !chat.getTimestamp().isBefore(cutoff)
+                    || watermark == null || chat.getSeq() > watermark) {
+                break;
+            }
+            movable.add(chat);
+        }
+        if (movable.isEmpty()) {
+            return 0;
+        }
+
+        List<ChatColdSegment> latest = chatColdSegmentRepository.findLatestForUpdate(conversationId, PageRequest.of(0, 1));
+        ChatColdSegment segment;
+        List<ColdMessage> messages;
+        if (!latest.isEmpty() && latest.get(0).getMessageCount() + movable.size() <= chunkSize) {
+            segment = latest.get(0);
+            messages = new ArrayList<>(decode(segment));
+        } else {
+            segment = new ChatColdSegment();
+            segment.setConversationId(conversationId);
+            segment.setFirstSeq(movable.get(0).getSeq());
+            messages = new ArrayList<>();
+        }
+        List<Integer> movedIds = new ArrayList<>();
+        for (Chat chat : movable) {
+            messages.add(new ColdMessage(chat.getId(), conversationId, chat.getSeq(), chat.getSender().getId(),
+                    chat.getReceiver().getId(), chat.getTimestamp(), chat.getMessage()));
+            movedIds.add(chat.getId());
+        }
+        segment.setLastSeq(movable.get(movable.size() - 1).getSeq());
+        segment.setMessageCount(messages.size());
+        segment.setData(encode(messages));
+        chatColdSegmentRepository.save(segment);
+        chatColdMessageIdRepository.insertFromChats(movedIds);
+        chatRepository.deleteByIds(movedIds);
+        return movable.size();
+    }
+
+    /**
+     * Up to limit cold messages of the conversation with a seq below beforeSeq, newest first, so
+     * they can be appended to a page of hot messages.
+     */
+    public List<Chat> findBefore(Conversation conversation, long beforeSeq, int limit) {
+        List<Chat> messages = new ArrayList<>();
+        Map<Integer, User> users = null;
+        long before = beforeSeq;
+        while (messages.size() < limit) {
+            List<ChatColdSegment> segments = chatColdSegmentRepository.findBefore(conversation.getId(), before, PageRequest.of(0, 1));
+            if (segments.isEmpty()) {
+                break;
+            }
+            if (users == null) {
+                users = participants(conversation.getUserLowId(), conversation.getUserHighId());
+            }
+            List<ColdMessage> decoded = decode(segments.get(0));
+            for (int i = decoded.size() - 1; i >= 0 && messages.size() < limit; i--) {
+                if (decoded.get(i).seq() < before) {
+                    messages.add(toChat(decoded.get(i), users));
+                }
+            }
+            before = segments.get(0).getFirstSeq();
+        }
+        return messages;
+    }
+
+    // The given seqs of a conversation that are in cold storage, in no particular order
+    public List<Chat> findBySeqs(Integer conversationId, Collection<Long> seqs) {
+        List<Chat> messages = new ArrayList<>();
+        if (seqs.isEmpty()) {
+            return messages;
+        }
+        Set<Long> wanted = new HashSet<>(seqs);
+        List<ChatColdSegment> segments = chatColdSegmentRepository.findOverlapping(conversationId,
+                wanted.stream().min(Long::compare).get(), wanted.stream().max(Long::compare).get());
+        Map<Integer, User> users = null;
+        for (ChatColdSegment segment : segments) {
+            for (ColdMessage message : decode(segment)) {
+                if (!wanted.contains(message.seq())) {
+                    continue;
+                }
+                if (users == null) {
+                    users = participants(message.senderId(), message.receiverId());
+                }
+                messages.add(toChat(message, users));
+            }
+        }
+        return messages;
+    }
+
+    // A moved message by its former chats id; ids that were never moved are answered without decoding anything
+    public Optional<Chat> findById(Integer messageId) {
+        Optional<ChatColdMessageId> location = chatColdMessageIdRepository.findById(messageId);
+        if (location.isEmpty()) {
+            return Optional.empty();
+        }
+        return findBySeqs(location.get().getConversationId(), List.of(location.get().getSeq())).stream().findFirst();
+    }
+
+    // Every cold message, segment by segment; used to rebuild the chat search index
+    public void forEachMessage(Consumer<ColdMessage> action) {
+        long lastId = 0;
+        List<ChatColdSegment> page;
+        do {
+            page = chatColdSegmentRepository.findAfter(lastId, PageRequest.of(0, SEGMENT_PAGE_SIZE));
+            for (ChatColdSegment segment : page) {
+                decode(segment).forEach(action);
+                lastId = segment.getId();
+            }
+        } while (page.size() == SEGMENT_PAGE_SIZE);
+    }
+
+    private Map<Integer, User> participants(Integer userId1, Integer userId2) {
+        Map<Integer, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(List.of(userId1, userId2))) {
+            users.put(user.getId(), user);
+        }
+        return users;
+    }
+
+    private static Chat toChat(ColdMessage message, Map<Integer, User> users) {
+        Chat chat = new Chat();
+        chat.setId(message.id());
+        chat.setSender(users.get(message.senderId()));
+        chat.setReceiver(users.get(message.receiverId()));
+        chat.setMessage(message.message());
+        chat.setTimestamp(message.timestamp());
+        chat.setConversationId(message.conversationId());
+        chat.setSeq(message.seq());
+        chat.setRead(true); // Only messages their receiver had read are moved
+        return chat;
+    }
+
+    static byte[] encode(List<ColdMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(messages.size());
+            for (ColdMessage message : messages) {
+                byte[] text = message.message().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(message.id());
+                out.writeLong(message.seq());
+                out.writeInt(message.senderId());
+                out.writeInt(message.receiverId());
+                out.writeLong(message.timestamp().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(message.timestamp().getNano());
+                out.writeInt(text.length);
+                out.write(text);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<ColdMessage> decode(ChatColdSegment segment) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(segment.getData())))) {
+            int count = in.readInt();
+            List<ColdMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                long seq = in.readLong();
+                int senderId = in.readInt();
+                int receiverId = in.readInt();
+                LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                byte[] text = new byte[in.readInt()];
+                in.readFully(text);
+                messages.add(new ColdMessage(id, segment.getConversationId(), seq, senderId, receiverId, timestamp,
+                        new String(text, StandardCharsets.UTF_8)));
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cold chat segment " + segment.getId() + " is corrupt", e);
+        }
+    }
+}
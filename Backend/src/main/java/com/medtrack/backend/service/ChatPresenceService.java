@@ -0,0 +1,140 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.config.StompAuthChannelInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Online and typing presence for chat, kept in memory only. A user is online while they have an
+ * open STOMP session that has been active within the presence TTL; entries for users whose
+ * sessions vanished without a disconnect event expire on the next sweep. Typing indicators are
+ * forwarded at most once per typing TTL and expire on the client.
+ */
+@Service
+public class ChatPresenceService {
+    private static final Logger logger = LoggerFactory.getLogger(ChatPresenceService.class);
+
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final ChatService chatService;
+    private final long presenceTtlMillis;
+    private final long typingTtlMillis;
+    private final Map<Integer, Presence> presence = new ConcurrentHashMap<>();
+    private final Map<TypingKey, Long> typing = new ConcurrentHashMap<>();
+
+    private static class Presence {
+        final Set<String> sessions = ConcurrentHashMap.newKeySet();
+        volatile long lastSeen;
+    }
+
+    private record TypingKey(Integer senderId, Integer receiverId) {
+    }
+
+    // Lazy: the broker's messaging template is built after the inbound interceptor that uses this service
+    @Autowired
+    public ChatPresenceService(@Lazy SimpMessageSendingOperations messagingTemplate, @Lazy ChatService chatService,
+                               @Value("${chat.presence.ttl-seconds:90}") long presenceTtlSeconds,
+                               @Value("${chat.typing.ttl-seconds:5}") long typingTtlSeconds) {
+        this.messagingTemplate = messagingTemplate;
+        this.chatService = chatService;
+        this.presenceTtlMillis = presenceTtlSeconds * 1000;
+        this.typingTtlMillis = typingTtlSeconds * 1000;
+    }
+
+    public void connected(Integer userId, String sessionId) {
+        presence.compute(userId, (id, entry) -> {
+            Presence updated = entry != null ? entry : new Presence();
+            updated.sessions.add(sessionId);
+            updated.lastSeen = System.currentTimeMillis();
+            return updated;
+        });
+    }
+
+    public void touch(Integer userId) {
+        Presence entry = presence.get(userId);
+        if (entry != null) {
+            entry.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    public Map<Integer, Boolean> getOnline(Collection<Integer> userIds) {
+        long now = System.currentTimeMillis();
+        Map<Integer, Boolean> online = new HashMap<>();
+        for (Integer userId : userIds) {
+            Presence entry = presence.get(userId);
+            online.put(userId, entry != null && now - entry.lastSeen <= presenceTtlMillis);
+        }
+        return online;
+    }
+
+    public void typing(Integer senderId, Integer receiverId, String receiverUsername) {
+        long now = System.currentTimeMillis();
+        Long previous = typing.put(new TypingKey(senderId, receiverId), now);
+        if (previous == null || now - previous >= typingTtlMillis) {
+            messagingTemplate.convertAndSendToUser(receiverUsername, "/queue/typing",
+                    Map.of("senderId", senderId, "expiresInMs", typingTtlMillis));
+        } else {
+            // Keep the original timestamp so the indicator is refreshed once per TTL
+            typing.put(new TypingKey(senderId, receiverId), previous);
+        }
+    }
+
+    // May be published more than once per session, hence the session id set
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Integer userId = userId(StompHeaderAccessor.wrap(event.getMessage()));
+        if (userId != null) {
+            presence.computeIfPresent(userId, (id, entry) -> {
+                entry.sessions.remove(event.getSessionId());
+                return entry.sessions.isEmpty() ? null : entry;
+            });
+        }
+    }
+
+    /**
+     * Unread counts are sent once when a client (re)subscribes to its message queue, replacing the
+     * polling of /api/chat/unread; afterwards new messages arrive on the same queue.
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Principal user = event.getUser();
+        Integer userId = userId(accessor);
+        if (user != null && userId != null && "/user/queue/messages".equals(accessor.getDestination())) {
+            messagingTemplate.convertAndSendToUser(user.getName(), "/queue/unread",
+                    Map.of("unread", chatService.countUnread(userId)));
+        }
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void expire() {
+        long now = System.currentTimeMillis();
+        int before = presence.size();
+        presence.values().removeIf(entry -> now - entry.lastSeen > presenceTtlMillis);
+        typing.values().removeIf(at -> now - at > typingTtlMillis);
+        if (presence.size() < before) {
+            logger.debug("Expired {} stale chat presence entries", before - presence.size());
+        }
+    }
+
+    private static Integer userId(StompHeaderAccessor accessor) {
+        Map<String, Object> session = accessor.getSessionAttributes();
+        return session != null ? (Integer) session.get(StompAuthChannelInterceptor.USER_ID_ATTRIBUTE) : null;
+    }
+}
@@ -0,0 +1,383 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.Chat;
+import com.medtrack.backend.repository.ChatRepository;
+import com.medtrack.backend.repository.ChatTextView;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over chat messages. Each term maps to one posting list per
+ * conversation holding (seq, term frequency) pairs, with seqs delta-encoded as varints, so the
+ * index costs a few bytes per word occurrence. It is rebuilt from chats and cold storage on
+ * startup and on demand, and kept current by ChatService as messages are committed.
+ * <p>
+ * Searches only look at conversations the caller takes part in, require every query term, and
+ * rank by TF-IDF with newer messages first on ties.
+ */
+@Service
+public class ChatSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ChatSearchIndex.class);
+
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final int REBUILD_PAGE_SIZE = 1000;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    private static final int MAX_QUERY_TERMS = 16;
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final ChatRepository chatRepository;
+    private final ChatColdStorageService chatColdStorageService;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final ExecutorService rebuildExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private Index index = new Index(); // guarded by lock
+    private List<Entry> addedDuringRebuild; // guarded by lock, non-null while rebuilding
+
+    public record Hit(Integer conversationId, long seq, double score) {
+    }
+
+    private record Entry(Integer conversationId, long seq, Integer senderId, Integer receiverId, String message) {
+    }
+
+    private static class Index {
+        final Map<String, Term> terms = new HashMap<>();
+        final Map<Integer, Set<Integer>> conversationsByUser = new HashMap<>();
+        long messages;
+
+        void add(Entry chat) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokenize(chat.message())) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            boolean added = false;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                Term term = terms.computeIfAbsent(entry.getKey(), t -> new Term());
+                if (term.byConversation.computeIfAbsent(chat.conversationId(), id -> new Postings())
+                        .add(chat.seq(), entry.getValue())) {
+                    term.messages++;
+                    added = true;
+                }
+            }
+            if (added) {
+                messages++;
+            }
+            conversationsByUser.computeIfAbsent(chat.senderId(), id -> new HashSet<>()).add(chat.conversationId());
+            conversationsByUser.computeIfAbsent(chat.receiverId(), id -> new HashSet<>()).add(chat.conversationId());
+        }
+    }
+
+    private static class Term {
+        final Map<Integer, Postings> byConversation = new HashMap<>();
+        long messages;
+    }
+
+    /**
+     * (seq, frequency) pairs of one term in one conversation, sorted by seq. Seqs are stored as
+     * zigzag varint deltas (legacy messages have seq <= 0), frequencies as plain varints.
+     */
+    static class Postings {
+        byte[] data = new byte[8];
+        int length;
+        int count;
+        long lastSeq;
+
+        // False when the seq is already there, e.g. a message committed during a rebuild
+        boolean add(long seq, int frequency) {
+            if (count > 0 && seq <= lastSeq) {
+                return insertOutOfOrder(seq, frequency);
+            }
+            append(seq - (count == 0 ? 0 : lastSeq), frequency);
+            lastSeq = seq;
+            count++;
+            return true;
+        }
+
+        private boolean insertOutOfOrder(long seq, int frequency) {
+            long[] seqs = new long[count];
+            int[] frequencies = new int[count];
+            decode(seqs, frequencies);
+            int position = Arrays.binarySearch(seqs, seq);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+            length = 0;
+            count = 0;
+            for (int i = 0; i <= seqs.length; i++) {
+                if (i == position) {
+                    append(seq - (count == 0 ? 0 : lastSeq), frequency);
+                    lastSeq = seq;
+                    count++;
+                }
+                if (i < seqs.length) {
+                    append(seqs[i] - (count == 0 ? 0 : lastSeq), frequencies[i]);
+                    lastSeq = seqs[i];
+                    count++;
+                }
+            }
+            return true;
+        }
+
+        void decode(long[] seqs, int[] frequencies) {
+            int[] offset = {0};
+            long seq = 0;
+            for (int i = 0; i < count; i++) {
+                long zigzag = readVarint(offset);
+                seq += (zigzag >>> 1) ^ -(zigzag & 1);
+                seqs[i] = seq;
+                frequencies[i] = (int) readVarint(offset);
+            }
+        }
+
+        private void append(long delta, int frequency) {
+            writeVarint((delta << 1) ^ (delta >> 63));
+            writeVarint(frequency);
+        }
+
+        private void writeVarint(long value) {
+            if (length + 10 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 10));
+            }
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        private long readVarint(int[] offset) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset[0]++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    @Autowired
+    public ChatSearchIndex(ChatRepository chatRepository, ChatColdStorageService chatColdStorageService) {
+        this.chatRepository = chatRepository;
+        this.chatColdStorageService = chatColdStorageService;
+    }
+
+    // After ChatService has attached legacy chats to conversations
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void rebuildOnStartup() {
+        rebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Starts rebuilding the index from chats in the background; searches keep using the current
+     * index until the new one is swapped in. Returns false when a rebuild is already running.
+     */
+    public boolean rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            addedDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        rebuildExecutor.submit(() -> {
+            try {
+                Index rebuilt = new Index();
+                int lastId = 0;
+                List<ChatTextView> page;
+                do {
+                    page = chatRepository.findTextAfter(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+                    for (ChatTextView chat : page) {
+                        rebuilt.add(new Entry(chat.getConversationId(), chat.getSeq(), chat.getSenderId(),
+                                chat.getReceiverId(), chat.getMessage()));
+                        lastId = chat.getId();
+                    }
+                } while (page.size() == REBUILD_PAGE_SIZE);
+                chatColdStorageService.forEachMessage(message -> rebuilt.add(new Entry(message.conversationId(),
+                        message.seq(), message.senderId(), message.receiverId(), message.message())));
+
+                lock.writeLock().lock();
+                try {
+                    // Postings ignore seqs they already hold, so overlap with the scan is harmless
+                    addedDuringRebuild.forEach(rebuilt::add);
+                    index = rebuilt;
+                } finally {
+                    addedDuringRebuild = null;
+                    lock.writeLock().unlock();
+                }
+                logger.info("Chat search index rebuilt: {} messages, {} terms", rebuilt.messages, rebuilt.terms.size());
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    addedDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                logger.error("Chat search index rebuild failed", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    /**
+     * Indexes a committed message. Chats without a conversation yet are picked up by the next
+     * rebuild.
+     */
+    public void add(Chat chat) {
+        if (chat.getConversationId() == null || chat.getSeq() == null || chat.getMessage() == null) {
+            return;
+        }
+        Entry entry = new Entry(chat.getConversationId(), chat.getSeq(), chat.getSender().getId(),
+                chat.getReceiver().getId(), chat.getMessage());
+        lock.writeLock().lock();
+        try {
+            index.add(entry);
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.add(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Messages of the user's conversations, optionally only the one with peerId, containing every
+     * term of the query, best first.
+     */
+    public List<Hit> search(Integer userId, Integer peerId, String query) {
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTerms.isEmpty()) {
+            throw new IllegalArgumentException("Query has no searchable words");
+        }
+        if (queryTerms.size() > MAX_QUERY_TERMS) {
+            throw new IllegalArgumentException("Query has more than " + MAX_QUERY_TERMS + " words");
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<Term> terms = new ArrayList<>();
+            for (String queryTerm : queryTerms) {
+                Term term = index.terms.get(queryTerm);
+                if (term == null) {
+                    return hits;
+                }
+                terms.add(term);
+            }
+            // Rarest term first: it decides which conversations and seqs are worth looking at
+            terms.sort(Comparator.comparingLong(term -> term.messages));
+            double[] idf = new double[terms.size()];
+            for (int i = 0; i < terms.size(); i++) {
+                long df = terms.get(i).messages;
+                idf[i] = Math.log(1 + (index.messages - df + 0.5) / (df + 0.5));
+            }
+
+            Set<Integer> conversations = index.conversationsByUser.getOrDefault(userId, Set.of());
+            Map<Integer, Postings> rarest = terms.get(0).byConversation;
+            boolean scanRarest = rarest.size() < conversations.size();
+            for (Integer conversationId : scanRarest ? rarest.keySet() : conversations) {
+                if (!conversations.contains(conversationId) || !rarest.containsKey(conversationId)) {
+                    continue;
+                }
+                if (peerId != null && !index.conversationsByUser.getOrDefault(peerId, Set.of()).contains(conversationId)) {
+                    continue;
+                }
+                scoreConversation(conversationId, terms, idf, hits);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed()
+                .thenComparing(Comparator.comparingLong(Hit::seq).reversed()));
+        return hits;
+    }
+
+    private static void scoreConversation(Integer conversationId, List<Term> terms, double[] idf, List<Hit> hits) {
+        Map<Long, Double> scores = null;
+        for (int i = 0; i < terms.size(); i++) {
+            Postings postings = terms.get(i).byConversation.get(conversationId);
+            if (postings == null) {
+                return;
+            }
+            long[] seqs = new long[postings.count];
+            int[] frequencies = new int[postings.count];
+            postings.decode(seqs, frequencies);
+            Map<Long, Double> matched = new HashMap<>();
+            for (int j = 0; j < seqs.length; j++) {
+                Double previous = scores == null ? Double.valueOf(0) : scores.get(seqs[j]);
+                if (previous != null) {
+                    matched.put(seqs[j], previous + (1 + Math.log(frequencies[j])) * idf[i]);
+                }
+            }
+            if (matched.isEmpty()) {
+                return;
+            }
+            scores = matched;
+        }
+        scores.forEach((seq, score) -> hits.add(new Hit(conversationId, seq, score)));
+    }
+
+    // Lowercased words and numbers with accents stripped, so accented and plain spellings match
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFKD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String token : NON_WORD.split(normalized)) {
+            if (token.isEmpty() || token.length() > MAX_TOKEN_LENGTH) {
+                continue;
+            }
+            // Single letters are noise, single digits are doses
+            if (token.length() == 1 && !Character.isDigit(token.charAt(0))) {
+                continue;
+            }
+            tokens.add(token);
+        }
+        return tokens;
+    }
+}
@@ -1,38 +1,359 @@
 package com.medtrack.backend.service;
 
 import com.medtrack.backend.entity.Chat;
+import com.medtrack.backend.entity.ChatReadWatermark;
+import com.medtrack.backend.entity.Conversation;
+import com.medtrack.backend.entity.User;
+import com.medtrack.backend.repository.ChatReadWatermarkRepository;
 import com.medtrack.backend.repository.ChatRepository;
+import com.medtrack.backend.repository.ConversationRepository;
+import com.medtrack.backend.repository.InboxRowView;
+import com.medtrack.backend.repository.UserRepository;
+import com.medtrack.backend.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ChatService {
+    private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int PREVIEW_LENGTH = 140;
+
     private final ChatRepository chatRepository;
+    private final ConversationRepository conversationRepository;
+    private final ChatReadWatermarkRepository chatReadWatermarkRepository;
+    private final UnreadCounterService unreadCounterService;
+    private final UserRepository userRepository;
+    private final ChatWriteBehindService chatWriteBehindService;
+    private final ChatSearchIndex chatSearchIndex;
+    private final ChatColdStorageService chatColdStorageService;
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // Conversation ids by user pair for the write-behind path; conversations are never deleted
+    private final Map<Long, Integer> conversationIds = new ConcurrentHashMap<>();
 
     @Autowired
-    public ChatService(ChatRepository chatRepository) {
+    public ChatService(ChatRepository chatRepository, ConversationRepository conversationRepository,
+                       ChatReadWatermarkRepository chatReadWatermarkRepository,
+                       UnreadCounterService unreadCounterService, UserRepository userRepository,
+                       ChatWriteBehindService chatWriteBehindService, ChatSearchIndex chatSearchIndex,
+                       ChatColdStorageService chatColdStorageService,
+                       SimpMessageSendingOperations messagingTemplate,
+                       PlatformTransactionManager transactionManager) {
         this.chatRepository = chatRepository;
+        this.conversationRepository = conversationRepository;
+        this.chatReadWatermarkRepository = chatReadWatermarkRepository;
+        this.unreadCounterService = unreadCounterService;
+        this.userRepository = userRepository;
+        this.chatWriteBehindService = chatWriteBehindService;
+        this.chatSearchIndex = chatSearchIndex;
+        this.chatColdStorageService = chatColdStorageService;
+        this.messagingTemplate = messagingTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
+    /**
+     * Saves the message with the next sequence number of its conversation and, once committed,
+     * pushes it to every open session of the receiver, and of the sender so their other windows
+     * stay in sync. The conversation row stays locked until commit, so seq order is commit order.
+     * With write-behind enabled the message is acknowledged once it is in the durable log; its id
+     * stays null in the returned chat and it is pushed when the writer has committed it.
+     */
     public Chat sendMessage(Chat chat) {
         chat.setRead(false); // Default to unread for new messages
-        return chatRepository.save(chat);
+        if (chatWriteBehindService.isEnabled()) {
+            chat.setConversationId(conversationId(chat.getSender().getId(), chat.getReceiver().getId()));
+            return chatWriteBehindService.append(chat, this::delivered);
+        }
+        return transactionTemplate.execute(status -> save(chat));
+    }
+
+    private Chat save(Chat chat) {
+        Conversation conversation = getOrCreateConversation(chat.getSender().getId(), chat.getReceiver().getId());
+        conversationRepository.incrementSeq(conversation.getId());
+        chat.setConversationId(conversation.getId());
+        chat.setSeq(conversationRepository.findLastSeq(conversation.getId())
+                .orElseThrow(() -> new IllegalStateException("Conversation " + conversation.getId() + " is missing")));
+        Chat saved = chatRepository.save(chat);
+        conversationRepository.updateLastMessage(conversation.getId(), saved.getId(), saved.getSender().getId(),
+                preview(saved.getMessage()), saved.getTimestamp());
+        unreadCounterService.messageSent(saved.getReceiver().getId(), saved.getSender().getId(), saved.getSeq());
+        TransactionUtils.afterCommit(() -> {
+            chatSearchIndex.add(saved);
+            push(saved);
+        });
+        return saved;
+    }
+
+    private void delivered(Chat chat) {
+        unreadCounterService.messageSent(chat.getReceiver().getId(), chat.getSender().getId(), chat.getSeq());
+        chatSearchIndex.add(chat);
+        push(chat);
     }
 
-    public List<Chat> getConversation(Integer userId1, Integer userId2) {
-        return chatRepository.findConversationBetween(userId1, userId2);
+    /**
+     * One page of a conversation in chronological order: the latest messages, or those before
+     * beforeSeq when paging back through history. A page that runs past the oldest hot message is
+     * filled up from cold storage.
+     */
+    public List<Chat> getConversation(Integer userId1, Integer userId2, Long beforeSeq, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Optional<Conversation> conversation = findConversation(userId1, userId2);
+        if (conversation.isEmpty()) {
+            return Collections.emptyList();
+        }
+        PageRequest page = PageRequest.of(0, limit);
+        List<Chat> messages = new ArrayList<>(beforeSeq != null
+                ? chatRepository.findInConversationBefore(conversation.get().getId(), beforeSeq, page)
+                : chatRepository.findLatestInConversation(conversation.get().getId(), page));
+        if (messages.size() < limit) {
+            long coldBefore = !messages.isEmpty() ? messages.get(messages.size() - 1).getSeq()
+                    : beforeSeq != null ? beforeSeq : Long.MAX_VALUE;
+            messages.addAll(chatColdStorageService.findBefore(conversation.get(), coldBefore, limit - messages.size()));
+        }
+        Collections.reverse(messages);
+
+        Map<Integer, Long> watermarks = new HashMap<>();
+        for (ChatReadWatermark watermark : chatReadWatermarkRepository.findByConversationId(conversation.get().getId())) {
+            watermarks.put(watermark.getUserId(), watermark.getLastReadSeq());
+        }
+        for (Chat message : messages) {
+            Long watermark = watermarks.get(message.getReceiver().getId());
+            message.setRead(watermark != null && message.getSeq() <= watermark);
+        }
+        return messages;
     }
 
     public List<Chat> getUnreadMessages(Integer receiverId) {
-        return chatRepository.findByReceiverIdAndReadFalse(receiverId);
+        return chatRepository.findUnreadByReceiverId(receiverId);
+    }
+
+    public long countUnread(Integer receiverId) {
+        return unreadCounterService.getTotal(receiverId);
     }
 
+    public Map<String, Object> getUnreadCounts(Integer receiverId) {
+        Map<Integer, Long> byPeer = unreadCounterService.getCounts(receiverId);
+        Map<String, Object> counts = new HashMap<>();
+        counts.put("total", byPeer.values().stream().mapToLong(Long::longValue).sum());
+        counts.put("byPeer", byPeer);
+        return counts;
+    }
+
+    /**
+     * Marks the conversation with peerId read up to and including upToSeq, or entirely when
+     * upToSeq is null, in a single upsert. Returns false if the two users never talked.
+     */
+    @Transactional
+    public boolean markConversationRead(Integer userId, Integer peerId, Long upToSeq) {
+        if (chatReadWatermarkRepository.advanceBetween(userId, peerId, upToSeq) == 0) {
+            return false;
+        }
+        findConversation(userId, peerId).ifPresent(conversation ->
+                unreadCounterService.conversationRead(userId, peerId, conversation.getId()));
+        return true;
+    }
+
+    /**
+     * Per-message variant kept for older clients: moves the receiver's watermark up to this message.
+     * Messages in cold storage were read before they were moved, so they are returned as they are.
+     */
+    @Transactional
     public Chat markAsRead(Integer messageId) {
-        Chat chat = chatRepository.findById(messageId)
-                .orElseThrow(() -> new RuntimeException("Message not found"));
+        Optional<Chat> hot = chatRepository.findById(messageId);
+        if (hot.isEmpty()) {
+            return chatColdStorageService.findById(messageId)
+                    .orElseThrow(() -> new RuntimeException("Message not found"));
+        }
+        Chat chat = hot.get();
+        chatReadWatermarkRepository.advance(chat.getReceiver().getId(), chat.getConversationId(), chat.getSeq());
+        unreadCounterService.conversationRead(chat.getReceiver().getId(), chat.getSender().getId(), chat.getConversationId());
         chat.setRead(true);
-        return chatRepository.save(chat);
+        return chat;
+    }
+
+    /**
+     * The user's conversations, most recent first, with the last message preview and the unread
+     * count from the peer. Continue with the lastMessageAt and conversationId of the last item.
+     */
+    public List<Map<String, Object>> getInbox(Integer userId, LocalDateTime beforeAt, Integer beforeId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (beforeAt != null && beforeId == null) {
+            throw new IllegalArgumentException("beforeId is required with beforeAt");
+        }
+        List<InboxRowView> rows = conversationRepository.findInbox(userId, beforeAt, beforeId, limit);
+        List<Integer> peerIds = new ArrayList<>();
+        for (InboxRowView row : rows) {
+            peerIds.add(row.getPeerId());
+        }
+        Map<Integer, User> peers = new HashMap<>();
+        for (User peer : userRepository.findAllById(peerIds)) {
+            peers.put(peer.getId(), peer);
+        }
+        Map<Integer, Long> unread = unreadCounterService.getCounts(userId);
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (InboxRowView row : rows) {
+            User peer = peers.get(row.getPeerId());
+            Map<String, Object> item = new HashMap<>();
+            item.put("conversationId", row.getConversationId());
+            item.put("peerId", row.getPeerId());
+            item.put("peerName", peer != null ? peer.getFirstName() + " " + peer.getLastName() : null);
+            item.put("lastSenderId", row.getLastSenderId());
+            item.put("lastMessagePreview", row.getLastMessagePreview());
+            item.put("lastMessageAt", row.getLastMessageAt());
+            item.put("lastSeq", row.getLastSeq());
+            item.put("unread", unread.getOrDefault(row.getPeerId(), 0L));
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Messages of the user's conversations containing every word of the query, best match first.
+     * Pass peerId to search a single conversation.
+     */
+    public Map<String, Object> searchMessages(Integer userId, Integer peerId, String query, int offset, int limit) {
+        if (limit < 1 || limit > ChatSearchIndex.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + ChatSearchIndex.MAX_PAGE_SIZE);
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative");
+        }
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("q is required");
+        }
+        List<ChatSearchIndex.Hit> hits = chatSearchIndex.search(userId, peerId, query);
+        List<ChatSearchIndex.Hit> page = hits.subList(Math.min(offset, hits.size()), Math.min(offset + limit, hits.size()));
+
+        Map<Integer, List<Long>> seqsByConversation = new HashMap<>();
+        for (ChatSearchIndex.Hit hit : page) {
+            seqsByConversation.computeIfAbsent(hit.conversationId(), id -> new ArrayList<>()).add(hit.seq());
+        }
+        Map<String, Chat> chats = new HashMap<>();
+        seqsByConversation.forEach((conversationId, seqs) -> {
+            for (Chat chat : chatRepository.findInConversationBySeqs(conversationId, seqs)) {
+                chats.put(chat.getConversationId() + ":" + chat.getSeq(), chat);
+            }
+            List<Long> cold = new ArrayList<>();
+            for (Long seq : seqs) {
+                if (!chats.containsKey(conversationId + ":" + seq)) {
+                    cold.add(seq);
+                }
+            }
+            for (Chat chat : chatColdStorageService.findBySeqs(conversationId, cold)) {
+                chats.put(chat.getConversationId() + ":" + chat.getSeq(), chat);
+            }
+        });
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (ChatSearchIndex.Hit hit : page) {
+            Chat chat = chats.get(hit.conversationId() + ":" + hit.seq());
+            if (chat == null) {
+                continue;
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("message", chat);
+            result.put("score", hit.score());
+            results.add(result);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("total", hits.size());
+        response.put("offset", offset);
+        response.put("limit", limit);
+        response.put("results", results);
+        response.put("indexing", chatSearchIndex.isRebuilding());
+        return response;
+    }
+
+    /**
+     * Attaches chats written before conversations existed, carries legacy read flags over to read
+     * watermarks while there are none yet, and fills in conversations' last message. Cheap when
+     * there is nothing to do, so it simply runs on every startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void migrateLegacyChats() {
+        if (chatRepository.existsByConversationIdIsNull()) {
+            int conversations = conversationRepository.insertLegacyConversations();
+            int chats = conversationRepository.numberLegacyChats();
+            logger.info("Attached {} legacy chats to conversations ({} conversations created)", chats, conversations);
+        }
+        // Separate from the step above: chats attached by an earlier version still need their flags imported
+        if (chatReadWatermarkRepository.count() == 0) {
+            int watermarks = chatReadWatermarkRepository.importLegacyReadFlags();
+            if (watermarks > 0) {
+                logger.info("Imported {} read watermarks from legacy read flags", watermarks);
+            }
+        }
+        if (conversationRepository.existsByLastMessageIdIsNull()) {
+            int updated = conversationRepository.backfillLastMessages();
+            logger.info("Filled in the last message of {} conversations", updated);
+        }
+    }
+
+    private static String preview(String message) {
+        return message.length() <= PREVIEW_LENGTH ? message : message.substring(0, PREVIEW_LENGTH - 1) + "\u2026";
+    }
+
+    private Optional<Conversation> findConversation(Integer userId1, Integer userId2) {
+        return conversationRepository.findByUserLowIdAndUserHighId(Math.min(userId1, userId2), Math.max(userId1, userId2));
+    }
+
+    private Integer conversationId(Integer userId1, Integer userId2) {
+        long key = ((long) Math.min(userId1, userId2) << 32) | Math.max(userId1, userId2);
+        Integer cached = conversationIds.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Integer id = transactionTemplate.execute(status -> getOrCreateConversation(userId1, userId2).getId());
+        conversationIds.put(key, id);
+        return id;
+    }
+
+    private Conversation getOrCreateConversation(Integer userId1, Integer userId2) {
+        Optional<Conversation> existing = findConversation(userId1, userId2);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        // If another transaction created the row first, INSERT IGNORE skips it and only a locking
+        // read can see it from this transaction's snapshot
+        conversationRepository.insertIfAbsent(Math.min(userId1, userId2), Math.max(userId1, userId2));
+        return conversationRepository.findForUpdate(Math.min(userId1, userId2), Math.max(userId1, userId2))
+                .orElseThrow(() -> new IllegalStateException("Conversation could not be created"));
+    }
+
+    private void push(Chat chat) {
+        messagingTemplate.convertAndSendToUser(chat.getReceiver().getUsername(), "/queue/messages", chat);
+        if (!chat.getSender().getUsername().equals(chat.getReceiver().getUsername())) {
+            messagingTemplate.convertAndSendToUser(chat.getSender().getUsername(), "/queue/messages", chat);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,502 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.Chat;
+import com.medtrack.backend.repository.ConversationRepository;
+import com.medtrack.backend.util.JdbcTimeUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Optional write-behind path for chat messages (chat.write-behind.enabled). A message is
+ * acknowledged once it has its sequence number and its record in the local log has been forced to
+ * disk; a single writer thread then moves queued messages into chats with one multi-row INSERT per
+ * batch. Concurrent senders share both the fsync and the commit, which is what keeps bursts cheap.
+ * <p>
+ * Sequence numbers come from in-memory counters seeded from conversations.last_seq, so this mode
+ * assumes a single application instance writes chats. On startup the log is replayed with INSERT
+ * IGNORE, which the (conversation_id, seq) key makes idempotent, before any new message is taken.
+ * A message the database rejects is moved to chat_dead_letters; a batch that fails for any other
+ * reason is left in the log, which is then kept until that replay.
+ */
+@Service
+public class ChatWriteBehindService {
+    private static final Logger logger = LoggerFactory.getLogger(ChatWriteBehindService.class);
+
+    private static final int MAX_RECORD_LENGTH = 1 << 20;
+    private static final long MAX_RETRY_DELAY_MS = 5000;
+    private static final String INSERT_COLUMNS =
+            " INTO chats (sender_id, receiver_id, message, timestamp, is_read, conversation_id, seq) VALUES ";
+    // Single writer, so a conversation's batches arrive in seq order; the guard only matters on replay
+    private static final String UPDATE_LAST_MESSAGE_SQL = "UPDATE conversations v " +
+            "JOIN chats c ON c.conversation_id = v.id AND c.seq = ? " +
+            "SET v.last_seq = c.seq, v.last_message_id = c.id, v.last_sender_id = c.sender_id, " +
+            "v.last_message_preview = LEFT(c.message, 140), v.last_message_at = c.timestamp " +
+            "WHERE v.id = ? AND v.last_seq <= c.seq";
+    private static final String INSERT_DEAD_LETTER_SQL = "INSERT INTO chat_dead_letters " +
+            "(conversation_id, seq, sender_id, receiver_id, message, sent_at, error, failed_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConversationRepository conversationRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Path logPath;
+    private final BlockingQueue<Pending> queue;
+    private final Map<Integer, AtomicLong> lastSeqs = new ConcurrentHashMap<>();
+    private final Object appendLock = new Object();
+    private final Object forceLock = new Object();
+
+    private FileChannel log;
+    private volatile long appendedBytes; // written under appendLock, counts every byte ever appended
+    private volatile long durableBytes; // written under forceLock
+    private volatile boolean running;
+    private volatile boolean keepLog; // set once a batch is abandoned, so the next startup replays it
+    private Thread writer;
+
+    private record Pending(Chat chat, Consumer<Chat> onPersisted) {
+    }
+
+    private record Message(int conversationId, long seq, int senderId, int receiverId, LocalDateTime timestamp,
+                           String text) {
+        static Message of(Chat chat) {
+            return new Message(chat.getConversationId(), chat.getSeq(), chat.getSender().getId(),
+                    chat.getReceiver().getId(), chat.getTimestamp(), chat.getMessage());
+        }
+    }
+
+    @Autowired
+    public ChatWriteBehindService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  ConversationRepository conversationRepository,
+                                  @Value("${chat.write-behind.enabled:false}") boolean enabled,
+                                  @Value("${chat.write-behind.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${chat.write-behind.batch-size:500}") int batchSize,
+                                  @Value("${chat.write-behind.log-path:chat-write-behind.log}") String logPath) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.conversationRepository = conversationRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.logPath = Paths.get(logPath);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path parent = logPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replayLog();
+        running = true;
+        writer = new Thread(this::runWriter, "chat-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("Chat write-behind enabled, logging to {}", logPath.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        if (!queue.isEmpty()) {
+            logger.warn("{} chat messages are left in {} and will be saved on the next startup",
+                    queue.size(), logPath.toAbsolutePath());
+        }
+        log.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Gives the message the next seq of its conversation and returns once it is durable in the
+     * log. onPersisted runs on the writer thread after the message is committed to chats, with its
+     * id filled in.
+     */
+    public Chat append(Chat chat, Consumer<Chat> onPersisted) {
+        if (!running) {
+            throw new IllegalStateException("Chat write-behind is not running");
+        }
+        long end;
+        synchronized (appendLock) {
+            // Only this block adds to the queue, so the capacity checked here is still there below
+            if (queue.remainingCapacity() == 0) {
+                throw new IllegalStateException("Too many chat messages waiting to be saved, retry shortly");
+            }
+            chat.setSeq(nextSeq(chat.getConversationId()));
+            ByteBuffer record = encode(Message.of(chat));
+            int length = record.remaining();
+            long start = 0;
+            try {
+                start = log.position();
+                while (record.hasRemaining()) {
+                    log.write(record);
+                }
+            } catch (IOException e) {
+                try {
+                    // Never leave a partial record in front of later ones
+                    log.truncate(start);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw new UncheckedIOException("Could not write chat message to the write-behind log", e);
+            }
+            appendedBytes += length;
+            end = appendedBytes;
+            queue.add(new Pending(chat, onPersisted));
+        }
+        awaitDurable(end);
+        return chat;
+    }
+
+    private long nextSeq(Integer conversationId) {
+        return lastSeqs.computeIfAbsent(conversationId, id -> new AtomicLong(conversationRepository.findLastSeq(id)
+                        .orElseThrow(() -> new IllegalStateException("Conversation " + id + " is missing"))))
+                .incrementAndGet();
+    }
+
+    // Group commit: whoever forces the log covers every record appended before it started
+    private void awaitDurable(long end) {
+        if (durableBytes >= end) {
+            return;
+        }
+        synchronized (forceLock) {
+            if (durableBytes >= end) {
+                return;
+            }
+            long target = appendedBytes;
+            try {
+                log.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not sync the chat write-behind log", e);
+            }
+            durableBytes = target;
+        }
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                if (!flush(batch)) {
+                    return;
+                }
+                truncateLogIfDrained();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException | IOException e) {
+                // The batch may be partly committed; rather than insert it twice, leave it to the log replay
+                keepLog = true;
+                logger.error("Chat write-behind writer failed, {} messages will be replayed from {} on the next startup",
+                        batch.size(), logPath.toAbsolutePath(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the batch, retrying while the database is unavailable. Returns false only when the
+     * service is stopping with the batch unsaved; the log still holds it for the next startup.
+     */
+    private boolean flush(List<Pending> batch) throws InterruptedException {
+        // Messages that already have an id are committed; they are only delivered
+        List<Pending> unsaved = new ArrayList<>(batch.size());
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            if (pending.chat().getId() == null) {
+                unsaved.add(pending);
+                messages.add(Message.of(pending.chat()));
+            }
+        }
+        long delay = 100;
+        while (!unsaved.isEmpty()) {
+            try {
+                List<Number> ids = transactionTemplate.execute(status -> insert(messages, false));
+                for (int i = 0; i < unsaved.size(); i++) {
+                    unsaved.get(i).chat().setId(ids.get(i).intValue());
+                }
+                break;
+            } catch (DataIntegrityViolationException e) {
+                // One bad row must not hold up the rest, so fall back to row by row
+                if (!flushOneByOne(unsaved)) {
+                    return false;
+                }
+                break;
+            } catch (DataAccessException e) {
+                if (!running) {
+                    logger.error("Could not save {} chat messages before shutdown", batch.size(), e);
+                    return false;
+                }
+                logger.warn("Could not save {} chat messages, retrying in {} ms", batch.size(), delay, e);
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+            }
+        }
+        for (Pending pending : batch) {
+            if (pending.chat().getId() == null) {
+                continue;
+            }
+            try {
+                pending.onPersisted().accept(pending.chat());
+            } catch (RuntimeException e) {
+                logger.warn("Could not deliver chat message {}", pending.chat().getId(), e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Saves the messages one at a time so that only rows violating a constraint are dead-lettered.
+     * Other failures are retried with the same backoff as a batch; returns false when the service
+     * is stopping with messages still unsaved.
+     */
+    private boolean flushOneByOne(List<Pending> batch) throws InterruptedException {
+        long delay = 100;
+        for (Pending pending : batch) {
+            Message message = Message.of(pending.chat());
+            while (pending.chat().getId() == null) {
+                try {
+                    List<Number> ids = transactionTemplate.execute(status -> insert(List.of(message), false));
+                    pending.chat().setId(ids.get(0).intValue());
+                } catch (DataIntegrityViolationException e) {
+                    deadLetter(message, e);
+                    break;
+                } catch (DataAccessException e) {
+                    if (!running) {
+                        logger.error("Could not save chat message {} of conversation {} before shutdown",
+                                message.seq(), message.conversationId(), e);
+                        return false;
+                    }
+                    logger.warn("Could not save chat message {} of conversation {}, retrying in {} ms",
+                            message.seq(), message.conversationId(), delay, e);
+                    Thread.sleep(delay);
+                    delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+                }
+            }
+        }
+        return true;
+    }
+
+    // The message was acknowledged to its sender, so it is parked in chat_dead_letters rather than dropped
+    private void deadLetter(Message message, DataIntegrityViolationException cause) {
+        logger.error("Could not save chat message {} of conversation {}, moving it to chat_dead_letters: {}",
+                message.seq(), message.conversationId(), cause.getMessage());
+        try {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(INSERT_DEAD_LETTER_SQL);
+                ps.setInt(1, message.conversationId());
+                ps.setLong(2, message.seq());
+                ps.setInt(3, message.senderId());
+                ps.setInt(4, message.receiverId());
+                ps.setString(5, message.text());
+                JdbcTimeUtils.setTimestamp(ps, 6, message.timestamp());
+                ps.setString(7, String.valueOf(cause.getMostSpecificCause().getMessage()));
+                JdbcTimeUtils.setTimestamp(ps, 8, LocalDateTime.now());
+                return ps;
+            });
+        } catch (DataAccessException e) {
+            // Last resort: the log keeps the record until the next startup replays it
+            keepLog = true;
+            logger.error("Could not save chat message {} of conversation {} to chat_dead_letters either",
+                    message.seq(), message.conversationId(), e);
+        }
+    }
+
+    /**
+     * One multi-row INSERT for the whole batch, then the last message of every conversation it
+     * touched. Generated ids are only returned when duplicates are not ignored.
+     */
+    private List<Number> insert(List<Message> messages, boolean ignoreDuplicates) {
+        StringBuilder sql = new StringBuilder(ignoreDuplicates ? "INSERT IGNORE" : "INSERT").append(INSERT_COLUMNS);
+        for (int i = 0; i < messages.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, false, ?, ?)" : ", (?, ?, ?, ?, false, ?, ?)");
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString(),
+                    ignoreDuplicates ? Statement.NO_GENERATED_KEYS : Statement.RETURN_GENERATED_KEYS);
+            int index = 1;
+            for (Message message : messages) {
+                ps.setInt(index++, message.senderId());
+                ps.setInt(index++, message.receiverId());
+                ps.setString(index++, message.text());
+                JdbcTimeUtils.setTimestamp(ps, index++, message.timestamp());
+                ps.setInt(index++, message.conversationId());
+                ps.setLong(index++, message.seq());
+            }
+            return ps;
+        }, keyHolder);
+
+        Map<Integer, Long> lastSeqByConversation = new LinkedHashMap<>();
+        for (Message message : messages) {
+            lastSeqByConversation.merge(message.conversationId(), message.seq(), Math::max);
+        }
+        List<Object[]> args = new ArrayList<>(lastSeqByConversation.size());
+        lastSeqByConversation.forEach((conversationId, seq) -> args.add(new Object[]{seq, conversationId}));
+        jdbcTemplate.batchUpdate(UPDATE_LAST_MESSAGE_SQL, args);
+
+        List<Number> ids = new ArrayList<>();
+        if (!ignoreDuplicates) {
+            for (Map<String, Object> keys : keyHolder.getKeyList()) {
+                ids.add((Number) keys.values().iterator().next());
+            }
+        }
+        return ids;
+    }
+
+    private void truncateLogIfDrained() throws IOException {
+        synchronized (appendLock) {
+            // Anything appended so far is either committed or still queued, unless a batch was abandoned
+            if (!keepLog && queue.isEmpty() && log.position() > 0) {
+                log.truncate(0);
+            }
+        }
+    }
+
+    private void replayLog() throws IOException {
+        List<Message> messages = new ArrayList<>();
+        long validBytes = 0;
+        InputStream in = new BufferedInputStream(Channels.newInputStream(log.position(0)));
+        DataInputStream data = new DataInputStream(in);
+        while (true) {
+            Message message;
+            try {
+                message = readRecord(data);
+            } catch (EOFException e) {
+                break;
+            }
+            if (message == null) {
+                break;
+            }
+            messages.add(message);
+            validBytes += recordLength(message);
+        }
+        if (validBytes < log.size()) {
+            logger.warn("Ignoring {} bytes of incomplete records at the end of {}", log.size() - validBytes,
+                    logPath.toAbsolutePath());
+        }
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            List<Message> chunk = messages.subList(from, Math.min(from + batchSize, messages.size()));
+            transactionTemplate.executeWithoutResult(status -> insert(chunk, true));
+        }
+        if (!messages.isEmpty()) {
+            logger.info("Replayed {} chat messages from {}", messages.size(), logPath.toAbsolutePath());
+        }
+        log.truncate(0);
+        log.force(true);
+        log.position(0);
+    }
+
+    private static ByteBuffer encode(Message message) {
+        byte[] text = message.text().getBytes(StandardCharsets.UTF_8);
+        int payloadLength = payloadLength(text.length);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payloadLength);
+        buffer.putInt(payloadLength).putInt(0)
+                .putInt(message.conversationId()).putLong(message.seq())
+                .putInt(message.senderId()).putInt(message.receiverId())
+                .putLong(message.timestamp().toEpochSecond(ZoneOffset.UTC)).putInt(message.timestamp().getNano())
+                .putInt(text.length).put(text);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, payloadLength);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.flip();
+    }
+
+    // Null for a torn or corrupt record, which can only be the last one written before a crash
+    private static Message readRecord(DataInputStream in) throws IOException {
+        int payloadLength = in.readInt();
+        int expectedCrc = in.readInt();
+        if (payloadLength < payloadLength(0) || payloadLength > MAX_RECORD_LENGTH) {
+            return null;
+        }
+        byte[] payload = new byte[payloadLength];
+        in.readFully(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != expectedCrc) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int conversationId = buffer.getInt();
+        long seq = buffer.getLong();
+        int senderId = buffer.getInt();
+        int receiverId = buffer.getInt();
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        byte[] text = new byte[buffer.getInt()];
+        if (text.length != buffer.remaining()) {
+            return null;
+        }
+        buffer.get(text);
+        return new Message(conversationId, seq, senderId, receiverId, timestamp, new String(text, StandardCharsets.UTF_8));
+    }
+
+    private static long recordLength(Message message) {
+        return 8 + payloadLength(message.text().getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static int payloadLength(int textLength) {
+        return 4 + 8 + 4 + 4 + 8 + 4 + 4 + textLength;
+    }
+}
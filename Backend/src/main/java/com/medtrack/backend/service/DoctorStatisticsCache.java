@@ -0,0 +1,180 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.util.TransactionUtils;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Per-doctor cache of dashboard statistics. Entries are evicted LRU beyond a size bound, refreshed
+ * in the background once they pass the refresh-ahead age, and invalidated when a booking,
+ * cancellation or rating for that doctor commits.
+ */
+@Component
+public class DoctorStatisticsCache {
+    private static final Logger logger = LoggerFactory.getLogger(DoctorStatisticsCache.class);
+
+    private final Duration ttl;
+    private final Duration refreshAfter;
+    private final Map<Integer, Entry> entries;
+    // Bumped on invalidation so a load that started earlier cannot store a stale result
+    private final Map<Integer, Long> generations = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+    private final Set<Integer> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public DoctorStatisticsCache(@Value("${statistics.doctor-cache.max-entries:500}") int maxEntries,
+                                 @Value("${statistics.doctor-cache.ttl-seconds:600}") long ttlSeconds,
+                                 @Value("${statistics.doctor-cache.refresh-after-seconds:300}") long refreshAfterSeconds) {
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.refreshAfter = Duration.ofSeconds(refreshAfterSeconds);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Map<String, Object> get(Integer doctorId, Function<Integer, Map<String, Object>> loader) {
+        long now = System.nanoTime();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(doctorId);
+        }
+        if (entry != null && now - entry.loadedAt() < ttl.toNanos()) {
+            hits.increment();
+            if (now - entry.loadedAt() >= refreshAfter.toNanos()) {
+                refreshAhead(doctorId, loader);
+            }
+            return entry.value();
+        }
+        misses.increment();
+        return load(doctorId, loader);
+    }
+
+    /**
+     * Drops the doctor's entry once the current transaction commits, or immediately when there is
+     * no transaction.
+     */
+    public void invalidate(Integer doctorId) {
+        if (doctorId == null) {
+            return;
+        }
+        TransactionUtils.afterCommit(() -> evict(doctorId));
+    }
+
+    public void invalidateAll() {
+        globalGeneration.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+        invalidations.increment();
+    }
+
+    public Map<String, Object> getMetrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> metrics = new HashMap<>();
+        synchronized (entries) {
+            metrics.put("size", entries.size());
+        }
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRatio", hitCount + missCount == 0 ? 0.0 : hitCount / (double) (hitCount + missCount));
+        metrics.put("refreshes", refreshes.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("invalidations", invalidations.sum());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private Map<String, Object> load(Integer doctorId, Function<Integer, Map<String, Object>> loader) {
+        long generation = generationOf(doctorId);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> value = (Map<String, Object>) deepUnmodifiable(loader.apply(doctorId));
+        synchronized (entries) {
+            if (generation == generationOf(doctorId)) {
+                entries.put(doctorId, new Entry(value, System.nanoTime()));
+            }
+        }
+        return value;
+    }
+
+    private void refreshAhead(Integer doctorId, Function<Integer, Map<String, Object>> loader) {
+        if (!refreshing.add(doctorId)) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                load(doctorId, loader);
+                refreshes.increment();
+            } catch (Exception e) {
+                logger.warn("Refreshing statistics for doctorId {} failed: {}", doctorId, e.getMessage());
+            } finally {
+                refreshing.remove(doctorId);
+            }
+        });
+    }
+
+    private void evict(Integer doctorId) {
+        generations.merge(doctorId, 1L, Long::sum);
+        synchronized (entries) {
+            entries.remove(doctorId);
+        }
+        invalidations.increment();
+    }
+
+    // Cached values are shared between callers, so nested maps and lists must not be mutable either
+    private static Object deepUnmodifiable(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            map.forEach((key, nested) -> copy.put(key, deepUnmodifiable(nested)));
+            return Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(nested -> copy.add(deepUnmodifiable(nested)));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    private long generationOf(Integer doctorId) {
+        return globalGeneration.get() + generations.getOrDefault(doctorId, 0L);
+    }
+
+    private record Entry(Map<String, Object> value, long loadedAt) {
+    }
+}
@@ -0,0 +1,134 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.User;
+import com.medtrack.backend.repository.AppointmentSlotRepository;
+import com.medtrack.backend.repository.FreeSlotCountView;
+import com.medtrack.backend.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory matrix of free slot counts per (specialty, location, date) for the booking heatmap.
+ * Loaded with one grouped query at startup, then kept current by the booking and availability
+ * code paths. A nightly rebuild corrects any drift, e.g. after a doctor changes location.
+ */
+@Service
+public class FreeSlotHeatmapService {
+    private static final Logger logger = LoggerFactory.getLogger(FreeSlotHeatmapService.class);
+
+    public static final int HORIZON_DAYS = 60;
+
+    private final AppointmentSlotRepository appointmentSlotRepository;
+    private volatile Map<HeatmapKey, AtomicInteger> counts = new ConcurrentHashMap<>();
+    // Deltas applied while a rebuild query runs; replayed onto the new map so none are lost in the swap
+    private final Object swapLock = new Object();
+    private List<Delta> pendingDeltas;
+
+    @Autowired
+    public FreeSlotHeatmapService(AppointmentSlotRepository appointmentSlotRepository) {
+        this.appointmentSlotRepository = appointmentSlotRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 5 0 * * ?") // Daily, after the midnight cleanup jobs
+    public synchronized void rebuild() {
+        LocalDate today = LocalDate.now();
+        synchronized (swapLock) {
+            pendingDeltas = new ArrayList<>();
+        }
+        Map<HeatmapKey, AtomicInteger> rebuilt = new ConcurrentHashMap<>();
+        for (FreeSlotCountView row : appointmentSlotRepository.countFreeSlotsBySpecialtyAndLocation(
+                today, today.plusDays(HORIZON_DAYS - 1))) {
+            rebuilt.put(new HeatmapKey(normalize(row.getSpecialty()), normalize(row.getLocation()), row.getDate()),
+                    new AtomicInteger(row.getFreeSlots().intValue()));
+        }
+        int replayed;
+        synchronized (swapLock) {
+            // A delta committed just before the query snapshot can be counted twice; the next rebuild corrects it
+            replayed = pendingDeltas.size();
+            for (Delta delta : pendingDeltas) {
+                rebuilt.computeIfAbsent(delta.key(), k -> new AtomicInteger()).addAndGet(delta.delta());
+            }
+            pendingDeltas = null;
+            counts = rebuilt;
+        }
+        logger.info("Rebuilt free slot heatmap with {} cells, replayed {} deltas", rebuilt.size(), replayed);
+    }
+
+    /**
+     * Adjusts the free slot count for a doctor's day. Inside a transaction the change is applied only
+     * after commit, so rolled-back bookings never show up in the heatmap.
+     */
+    public void adjust(User doctor, LocalDate date, int delta) {
+        if (doctor == null || date == null || delta == 0) {
+            return;
+        }
+        HeatmapKey key = new HeatmapKey(normalize(doctor.getSpecialty()), normalize(doctor.getLocation()), date);
+        TransactionUtils.afterCommit(() -> apply(key, delta));
+    }
+
+    /**
+     * Free slots per day starting today. Null filters aggregate over all specialties or locations.
+     */
+    public Map<String, Object> getHeatmap(String specialty, String location, int days) {
+        LocalDate today = LocalDate.now();
+        int horizon = Math.max(1, Math.min(days, HORIZON_DAYS));
+        int[] perDay = new int[horizon];
+        for (Map.Entry<HeatmapKey, AtomicInteger> entry : counts.entrySet()) {
+            HeatmapKey key = entry.getKey();
+            if (specialty != null && !key.specialty().equalsIgnoreCase(specialty)) {
+                continue;
+            }
+            if (location != null && !key.location().equalsIgnoreCase(location)) {
+                continue;
+            }
+            long offset = ChronoUnit.DAYS.between(today, key.date());
+            if (offset >= 0 && offset < horizon) {
+                perDay[(int) offset] += Math.max(0, entry.getValue().get());
+            }
+        }
+
+        Map<String, Object> heatmap = new HashMap<>();
+        heatmap.put("from", today);
+        heatmap.put("days", horizon);
+        heatmap.put("freeSlots", perDay);
+        return heatmap;
+    }
+
+    private void apply(HeatmapKey key, int delta) {
+        LocalDate today = LocalDate.now();
+        if (key.date().isBefore(today) || !key.date().isBefore(today.plusDays(HORIZON_DAYS))) {
+            return;
+        }
+        synchronized (swapLock) {
+            if (pendingDeltas != null) {
+                pendingDeltas.add(new Delta(key, delta));
+            }
+            counts.computeIfAbsent(key, k -> new AtomicInteger()).addAndGet(delta);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    private record HeatmapKey(String specialty, String location, LocalDate date) {
+    }
+
+    private record Delta(HeatmapKey key, int delta) {
+    }
+}
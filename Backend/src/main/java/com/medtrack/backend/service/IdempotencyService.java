@@ -0,0 +1,101 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.IdempotencyRecord;
+import com.medtrack.backend.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stores the first response for each Idempotency-Key so retries can be replayed. Recent entries
+ * live in a bounded LRU map; the database copy covers restarts and evicted entries.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final Duration ttl;
+    private final Map<String, StoredResponse> cache;
+
+    @Autowired
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${idempotency.max-entries:10000}") int maxEntries) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public Optional<StoredResponse> find(String scopedKey) {
+        LocalDateTime cutoff = LocalDateTime.now().minus(ttl);
+        synchronized (cache) {
+            StoredResponse cached = cache.get(scopedKey);
+            if (cached != null) {
+                if (cached.createdAt().isAfter(cutoff)) {
+                    return Optional.of(cached);
+                }
+                cache.remove(scopedKey);
+            }
+        }
+        Optional<StoredResponse> stored = idempotencyRecordRepository.findById(scopedKey)
+                .filter(record -> record.getCreatedAt().isAfter(cutoff))
+                .map(record -> new StoredResponse(record.getRequestFingerprint(), record.getStatusCode(),
+                        record.getContentType(), record.getResponseBody(), record.getCreatedAt()));
+        stored.ifPresent(response -> {
+            synchronized (cache) {
+                cache.put(scopedKey, response);
+            }
+        });
+        return stored;
+    }
+
+    public void save(String scopedKey, StoredResponse response) {
+        synchronized (cache) {
+            cache.put(scopedKey, response);
+        }
+        try {
+            IdempotencyRecord record = new IdempotencyRecord();
+            record.setScopedKey(scopedKey);
+            record.setRequestFingerprint(response.requestFingerprint());
+            record.setStatusCode(response.status());
+            record.setContentType(response.contentType());
+            record.setResponseBody(response.body());
+            record.setCreatedAt(response.createdAt());
+            idempotencyRecordRepository.save(record);
+        } catch (Exception e) {
+            // The in-memory copy still serves retries on this instance
+            logger.warn("Could not persist idempotency record {}: {}", scopedKey, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelay = 3600000) // Hourly
+    @Transactional
+    public void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(ttl);
+        synchronized (cache) {
+            cache.values().removeIf(response -> !response.createdAt().isAfter(cutoff));
+        }
+        int deleted = idempotencyRecordRepository.deleteByCreatedAtBefore(cutoff);
+        logger.debug("Purged {} expired idempotency records", deleted);
+    }
+
+    public record StoredResponse(String requestFingerprint, int status, String contentType, byte[] body,
+                                 LocalDateTime createdAt) {
+    }
+}
@@ -0,0 +1,202 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.DailyRollup;
+import com.medtrack.backend.repository.DailyCountView;
+import com.medtrack.backend.repository.DailyRollupRepository;
+import com.medtrack.backend.util.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters for the admin dashboard. The service layer bumps striped LongAdders after each
+ * commit; once a second, if anything changed, subscribers receive one "delta" event with the
+ * counts since the previous push. Idle subscribers hold no thread, so they cost nothing until an
+ * event arrives. New subscribers first get a "snapshot" of the counters plus today's rollups.
+ * <p>
+ * The flush runs on its own scheduler thread, not the shared @Scheduled one, and only hands
+ * deltas to subscribers: each subscriber is written on a virtual thread, one send at a time, and
+ * deltas that arrive while a send is stuck on a slow client are merged into its next event.
+ */
+@Service
+public class LiveDashboardService {
+    private static final Logger logger = LoggerFactory.getLogger(LiveDashboardService.class);
+
+    public enum Event {
+        registrations, bookings, cancellations, ratings
+    }
+
+    private final DailyRollupRepository dailyRollupRepository;
+    private final long emitterTimeoutMillis;
+    private final Map<Event, LongAdder> totals = new HashMap<>();
+    private final Map<Event, LongAdder> pending = new HashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("live-dashboard-flush").daemon().factory());
+    private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Counts not yet written to one subscriber; guarded by the subscriber's monitor
+    private static class Subscriber {
+        final SseEmitter emitter;
+        final Map<String, Long> unsent = new HashMap<>();
+        boolean sending;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    @Autowired
+    public LiveDashboardService(DailyRollupRepository dailyRollupRepository,
+                                @Value("${statistics.live.emitter-timeout-ms:1800000}") long emitterTimeoutMillis) {
+        this.dailyRollupRepository = dailyRollupRepository;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        for (Event event : Event.values()) {
+            totals.put(event, new LongAdder());
+            pending.put(event, new LongAdder());
+        }
+    }
+
+    /**
+     * Counts an event once the surrounding transaction commits, so rolled-back writes never show up.
+     */
+    public void record(Event event) {
+        TransactionUtils.afterCommit(() -> increment(event));
+    }
+
+    @PostConstruct
+    public void start() {
+        flushScheduler.scheduleWithFixedDelay(this::flush, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushScheduler.shutdownNow();
+        sendExecutor.shutdownNow();
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        emitter.onCompletion(() -> remove(emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(emitter));
+        try {
+            emitter.send(SseEmitter.event().name("snapshot").data(snapshot()));
+            subscribers.add(new Subscriber(emitter));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    private void flush() {
+        try {
+            push();
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled task for good
+            logger.error("Failed to push dashboard counters", e);
+        }
+    }
+
+    private void push() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        Map<String, Long> delta = new HashMap<>();
+        pending.forEach((event, adder) -> {
+            long count = adder.sumThenReset();
+            if (count != 0) {
+                delta.put(event.name(), count);
+            }
+        });
+        if (delta.isEmpty() || subscribers.isEmpty()) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            synchronized (subscriber) {
+                delta.forEach((event, count) -> subscriber.unsent.merge(event, count, Long::sum));
+                if (subscriber.sending) {
+                    continue;
+                }
+                subscriber.sending = true;
+            }
+            sendExecutor.execute(() -> drain(subscriber));
+        }
+        logger.debug("Pushed {} to {} dashboard subscribers", delta, subscribers.size());
+    }
+
+    // Sends until nothing is left for the subscriber, so at most one send per subscriber is in flight
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            Map<String, Long> delta;
+            synchronized (subscriber) {
+                if (subscriber.unsent.isEmpty()) {
+                    subscriber.sending = false;
+                    return;
+                }
+                delta = new HashMap<>(subscriber.unsent);
+                subscriber.unsent.clear();
+            }
+            try {
+                subscriber.emitter.send(SseEmitter.event().name("delta").data(delta));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(subscriber);
+                return;
+            }
+        }
+    }
+
+    private void remove(SseEmitter emitter) {
+        subscribers.removeIf(subscriber -> subscriber.emitter == emitter);
+    }
+
+    private void increment(Event event) {
+        totals.get(event).increment();
+        pending.get(event).increment();
+        dirty.set(true);
+    }
+
+    private Map<String, Object> snapshot() {
+        Map<String, Long> sinceStart = new HashMap<>();
+        totals.forEach((event, adder) -> sinceStart.put(event.name(), adder.sum()));
+        LocalDate today = LocalDate.now();
+        Map<String, Long> todayTotals = new HashMap<>();
+        todayTotals.put("registrations", sumToday(DailyRollup.Metric.registrations, today));
+        todayTotals.put("netBookings", sumToday(DailyRollup.Metric.booked_slots, today));
+        todayTotals.put("ratings", sumToday(DailyRollup.Metric.rating_count, today));
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("since", startedAt.toString());
+        snapshot.put("totals", sinceStart);
+        snapshot.put("today", todayTotals);
+        return snapshot;
+    }
+
+    private long sumToday(DailyRollup.Metric metric, LocalDate today) {
+        long total = 0;
+        for (DailyCountView row : dailyRollupRepository.sumByDay(metric, today, today)) {
+            total += row.getTotal();
+        }
+        return total;
+    }
+}
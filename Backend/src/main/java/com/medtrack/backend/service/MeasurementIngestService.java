@@ -0,0 +1,391 @@
+package com.medtrack.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medtrack.backend.entity.User;
+import com.medtrack.backend.entity.VitalReading;
+import com.medtrack.backend.repository.AppointmentRepository;
+import com.medtrack.backend.repository.UserRepository;
+import com.medtrack.backend.util.JdbcTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk ingestion of patient measurements from NDJSON or CSV bodies. The body is read line by
+ * line and written in JDBC batches, so memory stays bounded by the batch size whatever the upload
+ * size. Each reading goes to Statistics and vital_readings together, like addStatistics, so
+ * ingested data shows up in every statistics view, export, search and retention run.
+ */
+@Service
+public class MeasurementIngestService {
+    private static final Logger logger = LoggerFactory.getLogger(MeasurementIngestService.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final String INSERT_STATISTICS_SQL = "INSERT INTO statistics (patient_id, data_type, value, date) VALUES ";
+    private static final String INSERT_READING_SQL = "INSERT INTO vital_readings " +
+            "(patient_id, data_type, recorded_at, primary_value, secondary_value, source_statistics_id) VALUES ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserRepository userRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final ObjectMapper objectMapper;
+    private final VitalAnomalyDetector vitalAnomalyDetector;
+
+    // A parsed line: the typed reading plus the value as sent, which is what Statistics stores
+    private record Measurement(VitalReading reading, String value) {
+    }
+
+    public enum Format {
+        ndjson, csv
+    }
+
+    @Autowired
+    public MeasurementIngestService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                    UserRepository userRepository, AppointmentRepository appointmentRepository,
+                                    ObjectMapper objectMapper, VitalAnomalyDetector vitalAnomalyDetector) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userRepository = userRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.objectMapper = objectMapper;
+        this.vitalAnomalyDetector = vitalAnomalyDetector;
+    }
+
+    /**
+     * Ingests one reading per line. NDJSON lines look like
+     * {@code {"patientId":1,"dataType":"blood_pressure","value":"120/80","recordedAt":"2025-05-01T08:00:00"}};
+     * CSV needs a header naming the columns patientId, dataType, value and recordedAt. Each written
+     * batch is scored by the anomaly detector; a historical import only updates the baselines and
+     * raises no alerts. Patients may only send their own readings and doctors those of patients
+     * they have appointments with; other lines are rejected. Admins may send any patient's.
+     */
+    public Map<String, Object> ingest(InputStream body, Format format, boolean historical, User caller) throws IOException {
+        BoundedLineReader reader = new BoundedLineReader(
+                new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)), MAX_LINE_LENGTH);
+        Map<Integer, Boolean> knownPatients = new HashMap<>();
+        List<Measurement> batch = new ArrayList<>(BATCH_SIZE);
+        List<Map<String, Object>> errors = new ArrayList<>();
+        Map<String, Integer> csvColumns = null;
+        long lineNumber = 0;
+        long accepted = 0;
+        long rejected = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() && !reader.wasTruncated()) {
+                continue;
+            }
+            try {
+                if (reader.wasTruncated()) {
+                    throw new IllegalArgumentException("Line is longer than " + MAX_LINE_LENGTH + " characters");
+                }
+                if (format == Format.csv && csvColumns == null) {
+                    csvColumns = parseCsvHeader(line);
+                    continue;
+                }
+                Measurement measurement = format == Format.csv ? parseCsvLine(line, csvColumns) : parseJsonLine(line);
+                validatePatient(measurement.reading().getPatientId(), caller, knownPatients);
+                batch.add(measurement);
+                if (batch.size() == BATCH_SIZE) {
+                    accepted += flush(batch, historical);
+                }
+            } catch (IllegalArgumentException e) {
+                rejected++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    Map<String, Object> error = new HashMap<>();
+                    error.put("line", lineNumber);
+                    error.put("error", e.getMessage());
+                    errors.add(error);
+                }
+                if (csvColumns == null && format == Format.csv) {
+                    // Without a valid header no further line can be interpreted
+                    break;
+                }
+            }
+        }
+        accepted += flush(batch, historical);
+
+        logger.info("Ingested {} measurements ({} rejected) from {} lines", accepted, rejected, lineNumber);
+        Map<String, Object> result = new HashMap<>();
+        result.put("lines", lineNumber);
+        result.put("accepted", accepted);
+        result.put("rejected", rejected);
+        result.put("errors", errors);
+        result.put("errorsTruncated", rejected > errors.size());
+        return result;
+    }
+
+    private int flush(List<Measurement> batch, boolean historical) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            insertStatistics(batch);
+            insertReadings(batch);
+        });
+        for (Measurement measurement : batch) {
+            vitalAnomalyDetector.scoreCommitted(measurement.reading(), !historical);
+        }
+        int written = batch.size();
+        batch.clear();
+        return written;
+    }
+
+    // One multi-row INSERT per table; generated ids come back in row order
+    private void insertStatistics(List<Measurement> batch) {
+        List<Number> ids = insertReturningIds(INSERT_STATISTICS_SQL, 4, batch, (ps, index, measurement) -> {
+            VitalReading reading = measurement.reading();
+            ps.setInt(index++, reading.getPatientId());
+            ps.setString(index++, reading.getDataType());
+            ps.setString(index++, measurement.value());
+            ps.setObject(index, reading.getRecordedAt().toLocalDate());
+        });
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).reading().setSourceStatisticsId(ids.get(i).intValue());
+        }
+    }
+
+    // Ids are set on the readings so the anomaly detector can tell them apart from replayed history
+    private void insertReadings(List<Measurement> batch) {
+        List<Number> ids = insertReturningIds(INSERT_READING_SQL, 6, batch, (ps, index, measurement) -> {
+            VitalReading reading = measurement.reading();
+            ps.setInt(index++, reading.getPatientId());
+            ps.setString(index++, reading.getDataType());
+            JdbcTimeUtils.setTimestamp(ps, index++, reading.getRecordedAt());
+            ps.setDouble(index++, reading.getPrimaryValue());
+            if (reading.getSecondaryValue() != null) {
+                ps.setDouble(index++, reading.getSecondaryValue());
+            } else {
+                ps.setNull(index++, Types.DOUBLE);
+            }
+            ps.setInt(index, reading.getSourceStatisticsId());
+        });
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).reading().setId(ids.get(i).longValue());
+        }
+    }
+
+    private List<Number> insertReturningIds(String insertPrefix, int columns, List<Measurement> batch, RowBinder binder) {
+        String row = "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+        StringBuilder sql = new StringBuilder(insertPrefix);
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? row : ", " + row);
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < batch.size(); i++) {
+                binder.bind(ps, i * columns + 1, batch.get(i));
+            }
+            return ps;
+        }, keyHolder);
+        List<Number> ids = new ArrayList<>(batch.size());
+        for (Map<String, Object> keys : keyHolder.getKeyList()) {
+            ids.add((Number) keys.values().iterator().next());
+        }
+        return ids;
+    }
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement ps, int firstIndex, Measurement measurement) throws SQLException;
+    }
+
+    private Measurement parseJsonLine(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed JSON");
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return toReading(text(node, "patientId"), text(node, "dataType"), text(node, "value"), text(node, "recordedAt"));
+    }
+
+    private Map<String, Integer> parseCsvHeader(String line) {
+        String[] names = splitCsv(line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            columns.put(names[i], i);
+        }
+        for (String required : List.of("patientId", "dataType", "value", "recordedAt")) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header is missing column: " + required);
+            }
+        }
+        return columns;
+    }
+
+    private Measurement parseCsvLine(String line, Map<String, Integer> columns) {
+        String[] fields = splitCsv(line);
+        if (fields.length < columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " columns but found " + fields.length);
+        }
+        return toReading(fields[columns.get("patientId")], fields[columns.get("dataType")],
+                fields[columns.get("value")], fields[columns.get("recordedAt")]);
+    }
+
+    private Measurement toReading(String patientId, String dataType, String value, String recordedAt) {
+        if (patientId == null || dataType == null || dataType.isBlank() || recordedAt == null) {
+            throw new IllegalArgumentException("patientId, dataType, value and recordedAt are required");
+        }
+        int parsedPatientId;
+        try {
+            parsedPatientId = Integer.parseInt(patientId.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid patientId: " + patientId);
+        }
+        VitalReading reading = VitalsService.toReading(parsedPatientId, dataType.trim(), parseTimestamp(recordedAt.trim()),
+                VitalsService.parseValue(value));
+        return new Measurement(reading, value.trim());
+    }
+
+    private LocalDateTime parseTimestamp(String value) {
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            if (value.endsWith("Z") || value.matches(".*[+-]\\d{2}:\\d{2}$")) {
+                // Stored in UTC, matching hibernate.jdbc.time_zone
+                return OffsetDateTime.parse(value).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+            }
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid recordedAt: " + value);
+        }
+    }
+
+    private void validatePatient(Integer patientId, User caller, Map<Integer, Boolean> knownPatients) {
+        boolean valid = knownPatients.computeIfAbsent(patientId, id -> userRepository.findById(id)
+                .map(user -> user.getRole() == User.Role.patient && mayRecordFor(caller, id))
+                .orElse(false));
+        if (!valid) {
+            // Same message whether the patient is missing or not the caller's, so ids cannot be probed
+            throw new IllegalArgumentException("Patient not found: " + patientId);
+        }
+    }
+
+    private boolean mayRecordFor(User caller, Integer patientId) {
+        return switch (caller.getRole()) {
+            case admin -> true;
+            case patient -> patientId.equals(caller.getId());
+            case doctor -> appointmentRepository.existsByDoctorIdAndPatientId(caller.getId(), patientId);
+        };
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    // RFC 4180 fields: commas inside double quotes do not split, and "" inside quotes is a quote
+    private static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.toString().isBlank()) {
+                field.setLength(0);
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString().trim());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * readLine() that never holds more than maxLength characters: the rest of a longer line is
+     * skipped and the line is flagged, so a body without newlines cannot fill the heap.
+     */
+    private static class BoundedLineReader {
+        private final BufferedReader reader;
+        private final int maxLength;
+        private final StringBuilder line = new StringBuilder();
+        private boolean truncated;
+
+        BoundedLineReader(BufferedReader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        String readLine() throws IOException {
+            line.setLength(0);
+            truncated = false;
+            int c;
+            boolean any = false;
+            while ((c = reader.read()) != -1) {
+                any = true;
+                if (c == '\n') {
+                    break;
+                }
+                if (line.length() < maxLength) {
+                    line.append((char) c);
+                } else {
+                    truncated = true;
+                }
+            }
+            if (!any) {
+                return null;
+            }
+            if (!line.isEmpty() && line.charAt(line.length() - 1) == '\r') {
+                line.setLength(line.length() - 1);
+            }
+            return line.toString();
+        }
+
+        boolean wasTruncated() {
+            return truncated;
+        }
+    }
+}
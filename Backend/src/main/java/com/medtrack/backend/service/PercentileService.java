@@ -0,0 +1,197 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.StatisticsSketch;
+import com.medtrack.backend.repository.AppointmentSlotRepository;
+import com.medtrack.backend.repository.BookingTimesView;
+import com.medtrack.backend.repository.RatingRepository;
+import com.medtrack.backend.repository.RatingValueView;
+import com.medtrack.backend.repository.StatisticsSketchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps one QuantileSketch per (doctor, month, metric) in statistics_sketches, so percentiles over
+ * any range of months are answered by merging a handful of small sketches instead of scanning raw
+ * rows. Updates lock the sketch row and run in the caller's transaction, like the daily rollups.
+ */
+@Service
+public class PercentileService {
+    private static final Logger logger = LoggerFactory.getLogger(PercentileService.class);
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+    private static final byte[] EMPTY_SKETCH = new QuantileSketch().toBytes();
+
+    private final StatisticsSketchRepository statisticsSketchRepository;
+    private final AppointmentSlotRepository appointmentSlotRepository;
+    private final RatingRepository ratingRepository;
+
+    private record SketchKey(Integer doctorId, StatisticsSketch.Metric metric, LocalDate month) {
+    }
+
+    @Autowired
+    public PercentileService(StatisticsSketchRepository statisticsSketchRepository,
+                             AppointmentSlotRepository appointmentSlotRepository, RatingRepository ratingRepository) {
+        this.statisticsSketchRepository = statisticsSketchRepository;
+        this.appointmentSlotRepository = appointmentSlotRepository;
+        this.ratingRepository = ratingRepository;
+    }
+
+    /**
+     * Records (delta = 1) or withdraws (delta = -1) a booking. Lead time is slot start minus the
+     * booking time; both metrics are filed under the month of the slot.
+     */
+    @Transactional
+    public void recordBooking(Integer doctorId, LocalDateTime slotStartTime, LocalDateTime slotEndTime,
+                              LocalDateTime bookedAt, int delta) {
+        if (doctorId == null || slotStartTime == null) {
+            return;
+        }
+        LocalDate month = slotStartTime.toLocalDate().withDayOfMonth(1);
+        if (bookedAt != null) {
+            update(doctorId, StatisticsSketch.Metric.lead_time_minutes, month, leadTimeMinutes(bookedAt, slotStartTime), delta);
+        }
+        if (slotEndTime != null) {
+            update(doctorId, StatisticsSketch.Metric.duration_minutes, month, durationMinutes(slotStartTime, slotEndTime), delta);
+        }
+    }
+
+    @Transactional
+    public void recordRating(Integer doctorId, LocalDateTime createdAt, Integer rating) {
+        if (doctorId == null || createdAt == null || rating == null) {
+            return;
+        }
+        update(doctorId, StatisticsSketch.Metric.rating, createdAt.toLocalDate().withDayOfMonth(1), rating, 1);
+    }
+
+    /**
+     * p50/p90/p99 of a metric between two months (inclusive), for one doctor or for all doctors
+     * when doctorId is null, plus the same figures per month.
+     */
+    public Map<String, Object> getPercentiles(StatisticsSketch.Metric metric, Integer doctorId, YearMonth from, YearMonth to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        LocalDate fromDay = from.atDay(1);
+        LocalDate toDay = to.atDay(1);
+        List<StatisticsSketch> rows = doctorId != null
+                ? statisticsSketchRepository.findByDoctorAndMetricBetween(doctorId, metric, fromDay, toDay)
+                : statisticsSketchRepository.findByMetricBetween(metric, fromDay, toDay);
+
+        QuantileSketch overall = new QuantileSketch();
+        Map<String, QuantileSketch> monthly = new TreeMap<>();
+        for (StatisticsSketch row : rows) {
+            QuantileSketch sketch = QuantileSketch.fromBytes(row.getData());
+            overall.merge(sketch);
+            monthly.computeIfAbsent(YearMonth.from(row.getMonth()).toString(), m -> new QuantileSketch()).merge(sketch);
+        }
+
+        Map<String, Object> result = summarize(overall);
+        result.put("metric", metric.name());
+        result.put("doctorId", doctorId);
+        Map<String, Object> byMonth = new TreeMap<>();
+        monthly.forEach((month, sketch) -> byMonth.put(month, summarize(sketch)));
+        result.put("byMonth", byMonth);
+        return result;
+    }
+
+    /**
+     * Rebuilds every sketch from booked slots and ratings. Like the rollup backfill, run it while
+     * bookings are quiet; writes made during the rebuild may be lost.
+     */
+    @Transactional
+    public void backfill() {
+        logger.info("Backfilling percentile sketches");
+        Map<SketchKey, QuantileSketch> sketches = new HashMap<>();
+
+        int lastId = 0;
+        List<BookingTimesView> bookings;
+        do {
+            bookings = appointmentSlotRepository.findBookingTimesAfter(lastId, PageRequest.of(0, BACKFILL_BATCH_SIZE));
+            for (BookingTimesView booking : bookings) {
+                if (booking.getDoctorId() != null && booking.getSlotStartTime() != null) {
+                    LocalDate month = booking.getSlotStartTime().toLocalDate().withDayOfMonth(1);
+                    if (booking.getCreatedAt() != null) {
+                        sketches.computeIfAbsent(new SketchKey(booking.getDoctorId(), StatisticsSketch.Metric.lead_time_minutes, month),
+                                k -> new QuantileSketch()).record(leadTimeMinutes(booking.getCreatedAt(), booking.getSlotStartTime()), 1);
+                    }
+                    if (booking.getSlotEndTime() != null) {
+                        sketches.computeIfAbsent(new SketchKey(booking.getDoctorId(), StatisticsSketch.Metric.duration_minutes, month),
+                                k -> new QuantileSketch()).record(durationMinutes(booking.getSlotStartTime(), booking.getSlotEndTime()), 1);
+                    }
+                }
+                lastId = booking.getId();
+            }
+        } while (bookings.size() == BACKFILL_BATCH_SIZE);
+
+        lastId = 0;
+        List<RatingValueView> ratings;
+        do {
+            ratings = ratingRepository.findRatingValuesAfter(lastId, PageRequest.of(0, BACKFILL_BATCH_SIZE));
+            for (RatingValueView rating : ratings) {
+                if (rating.getCreatedAt() != null && rating.getRating() != null) {
+                    sketches.computeIfAbsent(new SketchKey(rating.getDoctorId(), StatisticsSketch.Metric.rating,
+                            rating.getCreatedAt().toLocalDate().withDayOfMonth(1)), k -> new QuantileSketch()).record(rating.getRating(), 1);
+                }
+                lastId = rating.getId();
+            }
+        } while (ratings.size() == BACKFILL_BATCH_SIZE);
+
+        statisticsSketchRepository.deleteAllSketches();
+        List<StatisticsSketch> rows = new ArrayList<>(sketches.size());
+        sketches.forEach((key, sketch) -> {
+            StatisticsSketch row = new StatisticsSketch();
+            row.setDoctorId(key.doctorId());
+            row.setMetric(key.metric());
+            row.setMonth(key.month());
+            row.setTotal(sketch.getCount());
+            row.setData(sketch.toBytes());
+            rows.add(row);
+        });
+        statisticsSketchRepository.saveAll(rows);
+        logger.info("Backfilled {} percentile sketches", rows.size());
+    }
+
+    private void update(Integer doctorId, StatisticsSketch.Metric metric, LocalDate month, long value, int delta) {
+        statisticsSketchRepository.insertIfAbsent(doctorId, metric.name(), month, EMPTY_SKETCH);
+        StatisticsSketch row = statisticsSketchRepository.findForUpdate(doctorId, metric, month)
+                .orElseThrow(() -> new IllegalStateException("Sketch row missing for doctor " + doctorId));
+        QuantileSketch sketch = QuantileSketch.fromBytes(row.getData());
+        sketch.record(value, delta);
+        row.setData(sketch.toBytes());
+        row.setTotal(sketch.getCount());
+        statisticsSketchRepository.save(row);
+    }
+
+    private Map<String, Object> summarize(QuantileSketch sketch) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("count", sketch.getCount());
+        summary.put("min", sketch.getMin());
+        summary.put("max", sketch.getMax());
+        summary.put("p50", sketch.quantile(0.5));
+        summary.put("p90", sketch.quantile(0.9));
+        summary.put("p99", sketch.quantile(0.99));
+        return summary;
+    }
+
+    // Bookings made after the slot started (e.g. walk-ins entered late) count as zero lead time
+    private static long leadTimeMinutes(LocalDateTime bookedAt, LocalDateTime slotStartTime) {
+        return Math.max(0, Duration.between(bookedAt, slotStartTime).toMinutes());
+    }
+
+    private static long durationMinutes(LocalDateTime slotStartTime, LocalDateTime slotEndTime) {
+        return Math.max(0, Duration.between(slotStartTime, slotEndTime).toMinutes());
+    }
+}
@@ -0,0 +1,170 @@
+package com.medtrack.backend.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Log-linear histogram in the style of HdrHistogram: values below 128 get their own bucket and
+ * larger values share buckets 1/64th of their power of two wide, so any quantile is reported with
+ * at most ~1.6% relative error. Sketches merge by adding bucket counts, which makes the result of
+ * merging monthly sketches identical to a sketch built over the whole range.
+ */
+public final class QuantileSketch {
+    private static final int LINEAR_BUCKETS = 128;
+    private static final int SUB_BUCKETS = 64;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final byte FORMAT_VERSION = 1;
+
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Adds (or with a negative delta, removes) occurrences of a non-negative value. Removal keeps
+     * bucket counts exact and never goes below zero in a bucket; min and max only ever widen, they
+     * are used to clamp estimates.
+     */
+    public void record(long value, long delta) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Sketch values must be non-negative: " + value);
+        }
+        int index = bucketIndex(value);
+        long existing = buckets.getOrDefault(index, 0L);
+        long updated = Math.max(0, existing + delta);
+        if (updated > 0) {
+            buckets.put(index, updated);
+        } else {
+            buckets.remove(index);
+        }
+        // Removing more than the bucket holds must not take count below the sum of the buckets
+        count += updated - existing;
+        if (delta > 0) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+    }
+
+    public void merge(QuantileSketch other) {
+        other.buckets.forEach((index, n) -> buckets.merge(index, n, Long::sum));
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Long getMin() {
+        return count > 0 ? min : null;
+    }
+
+    public Long getMax() {
+        return count > 0 ? max : null;
+    }
+
+    /**
+     * Estimated value at quantile q (0..1), or null for an empty sketch.
+     */
+    public Long quantile(double q) {
+        if (count == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (seen >= rank) {
+                long estimate = bucketMidpoint(bucket.getKey());
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Serialized form: version, count, min, max, number of buckets, then (index gap, count) pairs,
+     * all as unsigned varints. A typical monthly sketch is well under a kilobyte.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + buckets.size() * 3);
+        out.write(FORMAT_VERSION);
+        writeVarLong(out, count);
+        writeVarLong(out, count > 0 ? min : 0);
+        writeVarLong(out, count > 0 ? max : 0);
+        writeVarLong(out, buckets.size());
+        int previous = 0;
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            writeVarLong(out, bucket.getKey() - previous);
+            writeVarLong(out, bucket.getValue());
+            previous = bucket.getKey();
+        }
+        return out.toByteArray();
+    }
+
+    public static QuantileSketch fromBytes(byte[] data) {
+        QuantileSketch sketch = new QuantileSketch();
+        if (data == null || data.length == 0) {
+            return sketch;
+        }
+        ByteBuffer in = ByteBuffer.wrap(data);
+        byte version = in.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported sketch format: " + version);
+        }
+        sketch.count = readVarLong(in);
+        long min = readVarLong(in);
+        long max = readVarLong(in);
+        if (sketch.count > 0) {
+            sketch.min = min;
+            sketch.max = max;
+        }
+        long size = readVarLong(in);
+        int index = 0;
+        for (long i = 0; i < size; i++) {
+            index += (int) readVarLong(in);
+            sketch.buckets.put(index, readVarLong(in));
+        }
+        return sketch;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long bucketMidpoint(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long lower = (long) (SUB_BUCKETS + (index - LINEAR_BUCKETS) % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -14,11 +14,16 @@ import java.util.Optional;
 public class RatingService {
     private final RatingRepository ratingRepository;
     private final UserService userService;
+    private final RollupService rollupService;
+    private final PercentileService percentileService;
 
     @Autowired
-    public RatingService(RatingRepository ratingRepository, UserService userService) {
+    public RatingService(RatingRepository ratingRepository, UserService userService, RollupService rollupService,
+                         PercentileService percentileService) {
         this.ratingRepository = ratingRepository;
         this.userService = userService;
+        this.rollupService = rollupService;
+        this.percentileService = percentileService;
     }
 
     @Transactional
@@ -44,6 +49,8 @@ public class RatingService {
         rating.setPatient(patient.get());
         rating.setDoctor(doctor.get());
         Rating savedRating = ratingRepository.save(rating);
+        rollupService.recordRating(doctor.get().getId(), savedRating.getCreatedAt(), savedRating.getRating());
+        percentileService.recordRating(doctor.get().getId(), savedRating.getCreatedAt(), savedRating.getRating());
         System.out.println("Saved rating: " + savedRating);
         return savedRating;
     }
@@ -0,0 +1,135 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.repository.RawStatisticsView;
+import com.medtrack.backend.repository.StatisticsDailyAggregateRepository;
+import com.medtrack.backend.repository.StatisticsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compacts Statistics rows older than statistics.retention.days into statistics_daily_aggregates
+ * and deletes them. Each chunk is aggregated, merged and deleted in its own transaction, so a
+ * failed run loses nothing and the next run picks up where it stopped. Rows whose value is not
+ * numeric cannot be summarized and are kept. The patient view and the export merge the aggregates
+ * back in; the metadata search cannot, since metadata is dropped. Doctor and admin statistics do
+ * not read Statistics (they use daily_rollups and vital_readings), so compaction does not affect them.
+ */
+@Service
+public class RetentionService {
+    private static final Logger logger = LoggerFactory.getLogger(RetentionService.class);
+
+    private final StatisticsRepository statisticsRepository;
+    private final StatisticsDailyAggregateRepository statisticsDailyAggregateRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int retentionDays;
+    private final int chunkSize;
+
+    private record AggregateKey(Integer patientId, String dataType, LocalDate day) {
+    }
+
+    private static class Aggregate {
+        long count;
+        double primaryMin = Double.POSITIVE_INFINITY;
+        double primaryMax = Double.NEGATIVE_INFINITY;
+        double primarySum;
+        long secondaryCount;
+        double secondaryMin = Double.POSITIVE_INFINITY;
+        double secondaryMax = Double.NEGATIVE_INFINITY;
+        double secondarySum;
+
+        void add(double[] components) {
+            count++;
+            primaryMin = Math.min(primaryMin, components[0]);
+            primaryMax = Math.max(primaryMax, components[0]);
+            primarySum += components[0];
+            if (components.length > 1) {
+                secondaryCount++;
+                secondaryMin = Math.min(secondaryMin, components[1]);
+                secondaryMax = Math.max(secondaryMax, components[1]);
+                secondarySum += components[1];
+            }
+        }
+    }
+
+    @Autowired
+    public RetentionService(StatisticsRepository statisticsRepository,
+                            StatisticsDailyAggregateRepository statisticsDailyAggregateRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${statistics.retention.days:0}") int retentionDays,
+                            @Value("${statistics.retention.chunk-size:500}") int chunkSize) {
+        this.statisticsRepository = statisticsRepository;
+        this.statisticsDailyAggregateRepository = statisticsDailyAggregateRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retentionDays = retentionDays;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "0 30 0 * * ?") // Daily, after the midnight cleanup jobs
+    public void compactExpiredStatistics() {
+        if (retentionDays <= 0) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        logger.info("Compacting statistics recorded before {}", cutoff);
+        int lastId = 0;
+        long compacted = 0;
+        while (true) {
+            int afterId = lastId;
+            long[] chunk = transactionTemplate.execute(status -> compactChunk(cutoff, afterId));
+            if (chunk == null || chunk[0] < 0) {
+                break;
+            }
+            lastId = (int) chunk[0];
+            compacted += chunk[1];
+        }
+        logger.info("Compacted {} statistics rows recorded before {}", compacted, cutoff);
+    }
+
+    /**
+     * @return {last id scanned, rows compacted}, or {-1, 0} when nothing is left before the cutoff
+     */
+    private long[] compactChunk(LocalDate cutoff, int afterId) {
+        List<RawStatisticsView> rows = statisticsRepository.findRawBefore(cutoff, afterId, PageRequest.of(0, chunkSize));
+        if (rows.isEmpty()) {
+            return new long[]{-1, 0};
+        }
+        Map<AggregateKey, Aggregate> aggregates = new HashMap<>();
+        List<Integer> compactedIds = new ArrayList<>();
+        for (RawStatisticsView row : rows) {
+            double[] components;
+            try {
+                components = VitalsService.parseValue(row.getValue());
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            aggregates.computeIfAbsent(new AggregateKey(row.getPatientId(), row.getDataType(), row.getDate()),
+                    key -> new Aggregate()).add(components);
+            compactedIds.add(row.getId());
+        }
+        aggregates.forEach((key, aggregate) -> {
+            boolean hasSecondary = aggregate.secondaryCount > 0;
+            statisticsDailyAggregateRepository.merge(key.patientId(), key.dataType(), key.day(), aggregate.count,
+                    aggregate.primaryMin, aggregate.primaryMax, aggregate.primarySum, aggregate.secondaryCount,
+                    hasSecondary ? aggregate.secondaryMin : null, hasSecondary ? aggregate.secondaryMax : null,
+                    hasSecondary ? aggregate.secondarySum : null);
+        });
+        if (!compactedIds.isEmpty()) {
+            statisticsRepository.deleteMetadataByStatisticsIds(compactedIds);
+            statisticsRepository.deleteByIds(compactedIds);
+        }
+        return new long[]{rows.get(rows.size() - 1).getId(), compactedIds.size()};
+    }
+}
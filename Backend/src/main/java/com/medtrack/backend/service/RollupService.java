@@ -0,0 +1,121 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.DailyRollup;
+import com.medtrack.backend.repository.DailyRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maintains the daily_rollups table. Each update is a single upsert executed in the caller's
+ * transaction, so a rollup can never disagree with the write that produced it. Doctor statistics
+ * are derived from these rows, so this is also where their cache entries are invalidated and
+ * where the live admin dashboard is fed.
+ */
+@Service
+public class RollupService {
+    private static final Logger logger = LoggerFactory.getLogger(RollupService.class);
+
+    private final DailyRollupRepository dailyRollupRepository;
+    private final DoctorStatisticsCache doctorStatisticsCache;
+    private final LiveDashboardService liveDashboardService;
+    private final TransactionTemplate backfillTransaction;
+    // Increments hold the read side until their transaction completes; the backfill holds the write
+    // side, so no increment can commit between its delete and its re-insert
+    private final ReentrantReadWriteLock backfillLock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public RollupService(DailyRollupRepository dailyRollupRepository, DoctorStatisticsCache doctorStatisticsCache,
+                         LiveDashboardService liveDashboardService, PlatformTransactionManager transactionManager) {
+        this.dailyRollupRepository = dailyRollupRepository;
+        this.doctorStatisticsCache = doctorStatisticsCache;
+        this.liveDashboardService = liveDashboardService;
+        this.backfillTransaction = new TransactionTemplate(transactionManager);
+        // Source rows are read without locks, so writers waiting on backfillLock cannot block the backfill
+        this.backfillTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    @Transactional
+    public void recordBooking(Integer doctorId, LocalDateTime slotStartTime, int delta) {
+        if (doctorId == null || slotStartTime == null) {
+            return;
+        }
+        holdUntilCompletion(backfillLock.readLock());
+        dailyRollupRepository.increment(slotStartTime.toLocalDate(), doctorId, DailyRollup.Metric.booked_slots.name(),
+                slotStartTime.getHour(), (long) delta);
+        doctorStatisticsCache.invalidate(doctorId);
+        liveDashboardService.record(delta > 0 ? LiveDashboardService.Event.bookings : LiveDashboardService.Event.cancellations);
+    }
+
+    @Transactional
+    public void recordRating(Integer doctorId, LocalDateTime createdAt, int rating) {
+        if (doctorId == null || createdAt == null) {
+            return;
+        }
+        holdUntilCompletion(backfillLock.readLock());
+        dailyRollupRepository.increment(createdAt.toLocalDate(), doctorId, DailyRollup.Metric.rating_count.name(), 0, 1L);
+        dailyRollupRepository.increment(createdAt.toLocalDate(), doctorId, DailyRollup.Metric.rating_sum.name(), 0, (long) rating);
+        doctorStatisticsCache.invalidate(doctorId);
+        liveDashboardService.record(LiveDashboardService.Event.ratings);
+    }
+
+    @Transactional
+    public void recordRegistration(LocalDateTime createdAt) {
+        if (createdAt == null) {
+            return;
+        }
+        holdUntilCompletion(backfillLock.readLock());
+        dailyRollupRepository.increment(createdAt.toLocalDate(), DailyRollup.ALL_DOCTORS,
+                DailyRollup.Metric.registrations.name(), 0, 1L);
+        liveDashboardService.record(LiveDashboardService.Event.registrations);
+    }
+
+    /**
+     * Rebuilds every rollup from the raw tables. Run it once after deploying the rollups and
+     * whenever they are suspected to be off. Increments wait while it runs, and the delete and
+     * re-insert commit together, so readers never see a partial rebuild.
+     */
+    public void backfill() {
+        logger.info("Backfilling daily rollups");
+        backfillLock.writeLock().lock();
+        try {
+            int[] rows = backfillTransaction.execute(status -> {
+                dailyRollupRepository.deleteAllRollups();
+                return new int[]{
+                        dailyRollupRepository.backfillBookedSlots(),
+                        dailyRollupRepository.backfillRatingCounts() + dailyRollupRepository.backfillRatingSums(),
+                        dailyRollupRepository.backfillRegistrations()};
+            });
+            doctorStatisticsCache.invalidateAll();
+            logger.info("Backfilled daily rollups: {} booking rows, {} rating rows, {} registration rows",
+                    rows[0], rows[1], rows[2]);
+        } finally {
+            backfillLock.writeLock().unlock();
+        }
+    }
+
+    private void holdUntilCompletion(Lock lock) {
+        lock.lock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lock.unlock();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+}
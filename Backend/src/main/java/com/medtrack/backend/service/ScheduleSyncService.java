@@ -0,0 +1,326 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.Appointment;
+import com.medtrack.backend.entity.AppointmentSlot;
+import com.medtrack.backend.entity.Availability;
+import com.medtrack.backend.entity.CalendarFeedToken;
+import com.medtrack.backend.entity.ScheduleChange;
+import com.medtrack.backend.repository.AppointmentRepository;
+import com.medtrack.backend.repository.AvailabilityRepository;
+import com.medtrack.backend.repository.CalendarFeedTokenRepository;
+import com.medtrack.backend.repository.ScheduleChangeRepository;
+import com.medtrack.backend.repository.ScheduleSequenceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Change feed for doctor schedules. Every write to appointments or availabilities appends a
+ * {@link ScheduleChange} carrying the next value of that doctor's sequence, so clients can ask
+ * for "everything since token X" instead of refetching whole lists. Sequences are per doctor, so
+ * writes to different doctors' schedules never wait on each other's sequence row.
+ */
+@Service
+public class ScheduleSyncService {
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleSyncService.class);
+
+    private static final int MAX_CHANGES_PER_PAGE = 500;
+    private static final String TOKEN_PREFIX = "v1:";
+    private static final DateTimeFormatter ICS_UTC = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final int ICS_LINE_OCTETS = 75;
+    private static final int FEED_TOKEN_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ScheduleChangeRepository scheduleChangeRepository;
+    private final ScheduleSequenceRepository scheduleSequenceRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final AvailabilityRepository availabilityRepository;
+    private final CalendarFeedTokenRepository calendarFeedTokenRepository;
+    private final ZoneId scheduleZone;
+
+    @Autowired
+    public ScheduleSyncService(ScheduleChangeRepository scheduleChangeRepository,
+                               ScheduleSequenceRepository scheduleSequenceRepository,
+                               AppointmentRepository appointmentRepository,
+                               AvailabilityRepository availabilityRepository,
+                               CalendarFeedTokenRepository calendarFeedTokenRepository,
+                               @Value("${sync.calendar.time-zone:}") String scheduleZone) {
+        this.scheduleChangeRepository = scheduleChangeRepository;
+        this.scheduleSequenceRepository = scheduleSequenceRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.availabilityRepository = availabilityRepository;
+        this.calendarFeedTokenRepository = calendarFeedTokenRepository;
+        this.scheduleZone = scheduleZone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(scheduleZone);
+    }
+
+    /**
+     * Appends a change to the feed. Must run inside the transaction that performs the write: the
+     * doctor's sequence row stays locked until commit, so sequence order matches commit order and a
+     * reader can never skip a change that commits late.
+     */
+    @Transactional
+    public void recordChange(Integer doctorId, ScheduleChange.EntityType entityType, Integer entityId,
+                             ScheduleChange.ChangeType changeType) {
+        if (doctorId == null || entityId == null) {
+            return;
+        }
+        ScheduleChange change = new ScheduleChange();
+        change.setSeq(nextSeq(doctorId));
+        change.setDoctorId(doctorId);
+        change.setEntityType(entityType);
+        change.setEntityId(entityId);
+        change.setChangeType(changeType);
+        change.setChangedAt(LocalDateTime.now());
+        scheduleChangeRepository.save(change);
+    }
+
+    /**
+     * Returns the changes for a doctor since the given sync token. Without a token the full current
+     * schedule is returned together with a token to continue from.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getChanges(Integer doctorId, String syncToken) {
+        Map<String, Object> response = new HashMap<>();
+        if (syncToken == null || syncToken.isBlank()) {
+            // Read the sequence before the snapshot: anything committed in between is replayed by the
+            // next delta, which is harmless because clients apply changes as upserts.
+            long seq = scheduleSequenceRepository.findCurrentValue(doctorId).orElse(0L);
+            response.put("full", true);
+            response.put("appointments", appointmentRepository.findByDoctorId(doctorId));
+            response.put("availabilities", availabilityRepository.findByDoctorId(doctorId));
+            response.put("hasMore", false);
+            response.put("nextSyncToken", encodeToken(seq));
+            return response;
+        }
+
+        long since = decodeToken(syncToken);
+        List<ScheduleChange> changes = scheduleChangeRepository.findChangesSince(
+                doctorId, since, PageRequest.of(0, MAX_CHANGES_PER_PAGE));
+        long nextSeq = changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq();
+
+        // Only the latest change per entity matters to the client
+        Map<String, ScheduleChange> latest = new LinkedHashMap<>();
+        for (ScheduleChange change : changes) {
+            String key = change.getEntityType() + ":" + change.getEntityId();
+            latest.remove(key);
+            latest.put(key, change);
+        }
+
+        List<Integer> appointmentIds = idsOf(latest.values(), ScheduleChange.EntityType.appointment);
+        List<Integer> availabilityIds = idsOf(latest.values(), ScheduleChange.EntityType.availability);
+        Map<Integer, Appointment> appointments = appointmentRepository.findAllById(appointmentIds).stream()
+                .collect(Collectors.toMap(Appointment::getId, Function.identity()));
+        Map<Integer, Availability> availabilities = availabilityRepository.findAllById(availabilityIds).stream()
+                .collect(Collectors.toMap(Availability::getId, Function.identity()));
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (ScheduleChange change : latest.values()) {
+            Object current = change.getEntityType() == ScheduleChange.EntityType.appointment
+                    ? appointments.get(change.getEntityId())
+                    : availabilities.get(change.getEntityId());
+            Map<String, Object> item = new HashMap<>();
+            item.put("seq", change.getSeq());
+            item.put("entityType", change.getEntityType());
+            item.put("entityId", change.getEntityId());
+            if (current == null || change.getChangeType() == ScheduleChange.ChangeType.cancelled) {
+                item.put("changeType", ScheduleChange.ChangeType.cancelled);
+            } else {
+                item.put("changeType", change.getChangeType());
+                item.put("data", current);
+            }
+            items.add(item);
+        }
+
+        response.put("full", false);
+        response.put("changes", items);
+        response.put("hasMore", changes.size() == MAX_CHANGES_PER_PAGE);
+        response.put("nextSyncToken", encodeToken(nextSeq));
+        logger.debug("Returning {} schedule changes for doctorId: {} since seq {}", items.size(), doctorId, since);
+        return response;
+    }
+
+    /**
+     * Version tag of a doctor's schedule, used as the ETag of the calendar feed. It only moves when
+     * a change for that doctor is recorded.
+     */
+    @Transactional(readOnly = true)
+    public String getScheduleVersion(Integer doctorId) {
+        long seq = scheduleChangeRepository.findLatestSeqByDoctorId(doctorId).orElse(0L);
+        return "\"doctor-" + doctorId + "-" + seq + "\"";
+    }
+
+    /**
+     * Issues a new calendar feed token for the doctor, replacing (and so revoking) any previous one.
+     * The token is only returned here; the database keeps its hash.
+     */
+    @Transactional
+    public String issueCalendarToken(Integer doctorId) {
+        byte[] bytes = new byte[FEED_TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        CalendarFeedToken feedToken = calendarFeedTokenRepository.findById(doctorId).orElseGet(CalendarFeedToken::new);
+        feedToken.setDoctorId(doctorId);
+        feedToken.setTokenHash(hashToken(token));
+        feedToken.setCreatedAt(LocalDateTime.now());
+        calendarFeedTokenRepository.save(feedToken);
+        logger.info("Issued calendar feed token for doctorId: {}", doctorId);
+        return token;
+    }
+
+    @Transactional
+    public boolean revokeCalendarToken(Integer doctorId) {
+        if (!calendarFeedTokenRepository.existsById(doctorId)) {
+            return false;
+        }
+        calendarFeedTokenRepository.deleteById(doctorId);
+        logger.info("Revoked calendar feed token for doctorId: {}", doctorId);
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Integer> findDoctorByCalendarToken(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        return calendarFeedTokenRepository.findByTokenHash(hashToken(token)).map(CalendarFeedToken::getDoctorId);
+    }
+
+    /**
+     * RFC 5545 feed of the doctor's appointments. Slot times are wall-clock times in
+     * sync.calendar.time-zone (the server zone by default) and are written as UTC, so clients need
+     * no VTIMEZONE definition.
+     */
+    @Transactional(readOnly = true)
+    public String renderCalendar(Integer doctorId) {
+        StringBuilder ics = new StringBuilder();
+        appendLine(ics, "BEGIN:VCALENDAR");
+        appendLine(ics, "VERSION:2.0");
+        appendLine(ics, "PRODID:-//MedTrack//Doctor Schedule//EN");
+        appendLine(ics, "CALSCALE:GREGORIAN");
+        appendLine(ics, "X-WR-CALNAME:MedTrack appointments");
+        String stamp = LocalDateTime.now(ZoneOffset.UTC).format(ICS_UTC);
+        for (Appointment appointment : appointmentRepository.findByDoctorId(doctorId)) {
+            AppointmentSlot slot = appointment.getSlot();
+            if (slot == null || slot.getSlotStartTime() == null || slot.getSlotEndTime() == null) {
+                continue;
+            }
+            appendLine(ics, "BEGIN:VEVENT");
+            appendLine(ics, "UID:appointment-" + appointment.getId() + "@medtrack");
+            appendLine(ics, "DTSTAMP:" + stamp);
+            appendLine(ics, "DTSTART:" + toUtc(slot.getSlotStartTime()));
+            appendLine(ics, "DTEND:" + toUtc(slot.getSlotEndTime()));
+            appendLine(ics, "SUMMARY:" + escapeText("Appointment with " + displayName(appointment)));
+            appendLine(ics, "STATUS:" + (appointment.getStatus() == Appointment.Status.pending ? "TENTATIVE" : "CONFIRMED"));
+            appendLine(ics, "END:VEVENT");
+        }
+        appendLine(ics, "END:VCALENDAR");
+        return ics.toString();
+    }
+
+    private long nextSeq(Integer doctorId) {
+        if (scheduleSequenceRepository.increment(doctorId) == 0) {
+            // First change for this doctor: concurrent callers may race to create the row, so let the loser no-op
+            scheduleSequenceRepository.insertIfAbsent(doctorId);
+            scheduleSequenceRepository.increment(doctorId);
+        }
+        return scheduleSequenceRepository.findCurrentValue(doctorId)
+                .orElseThrow(() -> new IllegalStateException("Schedule sequence is missing"));
+    }
+
+    private List<Integer> idsOf(Iterable<ScheduleChange> changes, ScheduleChange.EntityType entityType) {
+        List<Integer> ids = new ArrayList<>();
+        for (ScheduleChange change : changes) {
+            if (change.getEntityType() == entityType && change.getChangeType() != ScheduleChange.ChangeType.cancelled) {
+                ids.add(change.getEntityId());
+            }
+        }
+        return ids;
+    }
+
+    private String encodeToken(long seq) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((TOKEN_PREFIX + seq).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long decodeToken(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(TOKEN_PREFIX)) {
+                throw new IllegalArgumentException("Invalid sync token");
+            }
+            return Long.parseLong(decoded.substring(TOKEN_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException and bad Base64 both end up here
+            throw new IllegalArgumentException("Invalid sync token");
+        }
+    }
+
+    private String displayName(Appointment appointment) {
+        if (appointment.getPatient() == null) {
+            return "patient";
+        }
+        String firstName = appointment.getPatient().getFirstName();
+        String lastName = appointment.getPatient().getLastName();
+        if (firstName == null && lastName == null) {
+            return appointment.getPatient().getUsername();
+        }
+        return ((firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "")).trim();
+    }
+
+    private String escapeText(String text) {
+        return text.replace("\\", "\\\\").replace(";", "\\;").replace(",", "\\,").replace("\n", "\\n");
+    }
+
+    private String toUtc(LocalDateTime time) {
+        return time.atZone(scheduleZone).withZoneSameInstant(ZoneOffset.UTC).format(ICS_UTC);
+    }
+
+    // Folds content lines longer than 75 octets (RFC 5545 3.1) without splitting a UTF-8 sequence
+    private void appendLine(StringBuilder ics, String line) {
+        int octets = 0;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = line.codePointAt(i);
+            int length = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (octets + length > ICS_LINE_OCTETS) {
+                ics.append("\r\n ");
+                octets = 1; // the leading space of the continuation line
+            }
+            ics.appendCodePoint(codePoint);
+            octets += length;
+            i += Character.charCount(codePoint);
+        }
+        ics.append("\r\n");
+    }
+
+    private static String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.medtrack.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the Statistics table as CSV or NDJSON straight from a forward-only JDBC cursor, one row
+ * at a time, so heap usage does not depend on the number of rows exported. Days already compacted
+ * by the retention job are appended from statistics_daily_aggregates, each with its row count.
+ */
+@Service
+public class StatisticsExportService {
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsExportService.class);
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public enum Format {
+        csv, ndjson
+    }
+
+    /**
+     * The default fetch size of Integer.MIN_VALUE makes MySQL Connector/J stream rows instead of
+     * buffering the whole result; with useCursorFetch=true a positive value can be used instead.
+     */
+    @Autowired
+    public StatisticsExportService(DataSource dataSource, ObjectMapper objectMapper,
+                                   @Value("${statistics.export.fetch-size:" + Integer.MIN_VALUE + "}") int fetchSize) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+    }
+
+    public void export(OutputStream out, Format format, String dataType, LocalDate from, LocalDate to) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT s.id, s.patient_id, s.data_type, s.value, s.date FROM statistics s WHERE 1 = 1");
+        StringBuilder aggregateSql = new StringBuilder("SELECT a.patient_id, a.data_type, a.aggregate_day, a.count, " +
+                "a.primary_min, a.primary_max, a.primary_sum, a.secondary_count, a.secondary_min, a.secondary_max, " +
+                "a.secondary_sum FROM statistics_daily_aggregates a WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (dataType != null && !dataType.isBlank()) {
+            sql.append(" AND s.data_type = ?");
+            aggregateSql.append(" AND a.data_type = ?");
+            params.add(dataType);
+        }
+        if (from != null) {
+            sql.append(" AND s.date >= ?");
+            aggregateSql.append(" AND a.aggregate_day >= ?");
+            params.add(Date.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND s.date <= ?");
+            aggregateSql.append(" AND a.aggregate_day <= ?");
+            params.add(Date.valueOf(to));
+        }
+        sql.append(" ORDER BY s.id");
+        aggregateSql.append(" ORDER BY a.id");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        JsonGenerator json = format == Format.ndjson ? objectMapper.getFactory().createGenerator(writer) : null;
+        if (json != null) {
+            // Records are separated by the newline written after each one, not Jackson's default space
+            json.setRootValueSeparator(null);
+        }
+        if (format == Format.csv) {
+            writer.write("id,patientId,dataType,value,date,count\n");
+        }
+        long[] rows = {0, 0};
+        try {
+            streamingJdbcTemplate.query(sql.toString(), rs -> {
+                try {
+                    Integer patientId = rs.getObject(2) != null ? rs.getInt(2) : null;
+                    Date date = rs.getDate(5);
+                    writeRow(writer, json, rs.getInt(1), patientId, rs.getString(3), rs.getString(4), date, 1, null, null);
+                    rows[0]++;
+                } catch (IOException e) {
+                    // Client went away; abort the cursor
+                    throw new UncheckedIOException(e);
+                }
+            }, params.toArray());
+            // Days compacted by RetentionService follow the raw rows, one averaged row per day
+            streamingJdbcTemplate.query(aggregateSql.toString(), rs -> {
+                try {
+                    long secondaryCount = rs.getLong(8);
+                    boolean hasSecondary = secondaryCount > 0;
+                    long count = rs.getLong(4);
+                    String value = StatisticsService.formatComponents(rs.getDouble(7) / count,
+                            hasSecondary ? rs.getDouble(11) / secondaryCount : null);
+                    String min = StatisticsService.formatComponents(rs.getDouble(5), hasSecondary ? rs.getDouble(9) : null);
+                    String max = StatisticsService.formatComponents(rs.getDouble(6), hasSecondary ? rs.getDouble(10) : null);
+                    writeRow(writer, json, null, rs.getInt(1), rs.getString(2), value, rs.getDate(3), count, min, max);
+                    rows[1]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, params.toArray());
+        } finally {
+            if (json != null) {
+                json.flush();
+            }
+            writer.flush();
+        }
+        logger.info("Exported {} statistics rows and {} compacted days as {}", rows[0], rows[1], format);
+    }
+
+    // Compacted days have no id; their value is the day's average and min/max are only written to NDJSON
+    private static void writeRow(Writer writer, JsonGenerator json, Integer id, Integer patientId, String type,
+                                 String value, Date date, long count, String min, String max) throws IOException {
+        if (json != null) {
+            json.writeStartObject();
+            if (id != null) {
+                json.writeNumberField("id", id);
+            } else {
+                json.writeNullField("id");
+            }
+            if (patientId != null) {
+                json.writeNumberField("patientId", patientId);
+            } else {
+                json.writeNullField("patientId");
+            }
+            json.writeStringField("dataType", type);
+            json.writeStringField("value", value);
+            json.writeStringField("date", date != null ? date.toLocalDate().toString() : null);
+            json.writeNumberField("count", count);
+            if (id == null) {
+                json.writeBooleanField("compacted", true);
+                json.writeStringField("min", min);
+                json.writeStringField("max", max);
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        } else {
+            writer.write((id != null ? id : "") + "," + (patientId != null ? patientId : "") + "," + csvField(type) + ","
+                    + csvField(value) + "," + (date != null ? date.toLocalDate() : "") + "," + count + "\n");
+        }
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -1,180 +1,442 @@
 package com.medtrack.backend.service;
 
-import com.medtrack.backend.entity.Appointment;
-import com.medtrack.backend.entity.AppointmentSlot;
-import com.medtrack.backend.entity.Rating;
+import com.medtrack.backend.entity.DailyRollup;
 import com.medtrack.backend.entity.Statistics;
+import com.medtrack.backend.entity.StatisticsDailyAggregate;
 import com.medtrack.backend.entity.User;
+import com.medtrack.backend.entity.VitalReading;
 import com.medtrack.backend.repository.AppointmentRepository;
 import com.medtrack.backend.repository.AppointmentSlotRepository;
+import com.medtrack.backend.repository.DailyRollupRepository;
+import com.medtrack.backend.repository.DailyVitalAverageView;
+import com.medtrack.backend.repository.DailyCountView;
+import com.medtrack.backend.repository.DoctorCountView;
+import com.medtrack.backend.repository.HourCountView;
+import com.medtrack.backend.repository.EngagementView;
+import com.medtrack.backend.repository.StatusCountView;
+import com.medtrack.backend.repository.StatisticsDailyAggregateRepository;
 import com.medtrack.backend.repository.StatisticsRepository;
 import com.medtrack.backend.repository.RatingRepository;
 import com.medtrack.backend.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class StatisticsService {
     private static final Logger logger = LoggerFactory.getLogger(StatisticsService.class);
+    private static final int TOP_ENGAGEMENT_PATIENTS = 20;
+    private static final int MAX_ENGAGEMENT_PAGE_SIZE = 100;
+    private static final int MAX_METADATA_SEARCH_LIMIT = 500;
+    private static final int METADATA_SEARCH_CHUNK = 1000;
+    private static final int MAX_METADATA_SEARCH_CHUNKS = 20;
+    private static final int METADATA_SEARCH_COUNT_CAP = 100_000;
+    public static final Set<String> ADMIN_SECTIONS = Collections.unmodifiableSet(new LinkedHashSet<>(List.of(
+            "userRegistrations", "appointmentStatusDistribution", "appointmentsByDoctor", "bloodPressure",
+            "engagementScores", "appointmentsByHour")));
 
     private final StatisticsRepository statisticsRepository;
     private final AppointmentRepository appointmentRepository;
     private final RatingRepository ratingRepository;
     private final AppointmentSlotRepository appointmentSlotRepository;
     private final UserRepository userRepository;
+    private final DailyRollupRepository dailyRollupRepository;
+    private final DoctorStatisticsCache doctorStatisticsCache;
+    private final VitalsService vitalsService;
+    private final StatisticsDailyAggregateRepository statisticsDailyAggregateRepository;
+    private final VitalAnomalyDetector vitalAnomalyDetector;
+    private final ExecutorService adminSectionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long adminSectionTimeoutMillis;
+    private final Semaphore adminSectionPermits;
 
     @Autowired
     public StatisticsService(StatisticsRepository statisticsRepository, AppointmentRepository appointmentRepository,
                              RatingRepository ratingRepository, AppointmentSlotRepository appointmentSlotRepository,
-                             UserRepository userRepository) {
+                             UserRepository userRepository, DailyRollupRepository dailyRollupRepository,
+                             DoctorStatisticsCache doctorStatisticsCache, VitalsService vitalsService,
+                             StatisticsDailyAggregateRepository statisticsDailyAggregateRepository,
+                             VitalAnomalyDetector vitalAnomalyDetector,
+                             @Value("${statistics.admin.section-timeout-ms:5000}") long adminSectionTimeoutMillis,
+                             @Value("${statistics.admin.max-concurrent-sections:4}") int maxConcurrentSections) {
         this.statisticsRepository = statisticsRepository;
         this.appointmentRepository = appointmentRepository;
         this.ratingRepository = ratingRepository;
         this.appointmentSlotRepository = appointmentSlotRepository;
         this.userRepository = userRepository;
+        this.dailyRollupRepository = dailyRollupRepository;
+        this.doctorStatisticsCache = doctorStatisticsCache;
+        this.vitalsService = vitalsService;
+        this.statisticsDailyAggregateRepository = statisticsDailyAggregateRepository;
+        this.vitalAnomalyDetector = vitalAnomalyDetector;
+        this.adminSectionTimeoutMillis = adminSectionTimeoutMillis;
+        this.adminSectionPermits = new Semaphore(maxConcurrentSections, true);
     }
 
+    /**
+     * Raw readings plus one entry per compacted day (see RetentionService). A compacted entry has
+     * no id, the day's average as its value and compacted/count/min/max in its metadata.
+     */
     public List<Statistics> getStatisticsByPatient(Integer patientId) {
         logger.info("Fetching statistics for patientId: {}", patientId);
-        List<Statistics> stats = statisticsRepository.findByPatientId(patientId);
-        logger.debug("Found {} statistics for patientId: {}", stats.size(), patientId);
+        List<Statistics> stats = new ArrayList<>(statisticsRepository.findByPatientId(patientId));
+        List<StatisticsDailyAggregate> aggregates = statisticsDailyAggregateRepository.findByPatientIdOrderByDayAsc(patientId);
+        if (!aggregates.isEmpty()) {
+            User patient = userRepository.findById(patientId).orElse(null);
+            for (StatisticsDailyAggregate aggregate : aggregates) {
+                stats.add(fromAggregate(aggregate, patient));
+            }
+            stats.sort(Comparator.comparing(Statistics::getDate));
+        }
+        logger.debug("Found {} statistics ({} compacted days) for patientId: {}", stats.size(), aggregates.size(), patientId);
         return stats;
     }
 
+    private Statistics fromAggregate(StatisticsDailyAggregate aggregate, User patient) {
+        boolean hasSecondary = aggregate.getSecondaryCount() > 0;
+        Statistics statistics = new Statistics();
+        statistics.setPatient(patient);
+        statistics.setDataType(aggregate.getDataType());
+        statistics.setDate(aggregate.getDay());
+        statistics.setValue(formatComponents(aggregate.getPrimarySum() / aggregate.getCount(),
+                hasSecondary ? aggregate.getSecondarySum() / aggregate.getSecondaryCount() : null));
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("compacted", "true");
+        metadata.put("count", String.valueOf(aggregate.getCount()));
+        metadata.put("min", formatComponents(aggregate.getPrimaryMin(), hasSecondary ? aggregate.getSecondaryMin() : null));
+        metadata.put("max", formatComponents(aggregate.getPrimaryMax(), hasSecondary ? aggregate.getSecondaryMax() : null));
+        statistics.setMetadata(metadata);
+        return statistics;
+    }
+
+    // Same shape as the raw values: "72.5", or "120/80" for two-part readings
+    static String formatComponents(double primary, Double secondary) {
+        String value = formatNumber(primary);
+        return secondary != null ? value + "/" + formatNumber(secondary) : value;
+    }
+
+    private static String formatNumber(double value) {
+        double rounded = Math.round(value * 10) / 10.0;
+        return rounded == Math.rint(rounded) ? String.valueOf((long) rounded) : String.valueOf(rounded);
+    }
+
+    @Transactional
     public Statistics addStatistics(Statistics statistics) {
         logger.info("Adding statistics: {}", statistics);
         Statistics saved = statisticsRepository.save(statistics);
+        VitalReading reading = vitalsService.recordFromStatistics(saved);
+        if (reading != null) {
+            vitalAnomalyDetector.observe(reading);
+        }
         logger.debug("Saved statistics: {}", saved);
         return saved;
     }
 
+    /**
+     * Statistics whose metadata contains every given key/value pair, optionally narrowed by data
+     * type and date range. Patients only find their own rows and doctors those of patients they
+     * have appointments with; admins search everything. The rarest pair drives the scan: its
+     * posting list is read in pages of METADATA_SEARCH_CHUNK ids after afterId, and the other pairs
+     * are only probed for those ids. At most MAX_METADATA_SEARCH_CHUNKS pages are read per call, so
+     * a sparse match returns fewer than limit items with a nextAfterId to continue from. Days
+     * compacted by RetentionService keep no metadata, so they never match.
+     */
+    public Map<String, Object> searchByMetadata(Map<String, String> pairs, String dataType, LocalDate startDate,
+                                                LocalDate endDate, Integer afterId, int limit, User caller) {
+        if (pairs.isEmpty()) {
+            throw new IllegalArgumentException("At least one metadata key:value pair is required");
+        }
+        if (limit < 1 || limit > MAX_METADATA_SEARCH_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_METADATA_SEARCH_LIMIT);
+        }
+        Integer patientScope = caller.getRole() == User.Role.patient ? caller.getId() : null;
+        Integer doctorScope = caller.getRole() == User.Role.doctor ? caller.getId() : null;
+        int cursor = afterId != null ? afterId : 0;
+
+        List<Map.Entry<String, String>> ordered = new ArrayList<>(pairs.entrySet());
+        if (ordered.size() > 1) {
+            Map<Map.Entry<String, String>, Long> sizes = new HashMap<>();
+            for (Map.Entry<String, String> pair : ordered) {
+                sizes.put(pair, statisticsRepository.countIdsByMetadata(pair.getKey(), pair.getValue(), cursor,
+                        METADATA_SEARCH_COUNT_CAP));
+            }
+            ordered.sort(Comparator.comparing(sizes::get));
+        }
+        Map.Entry<String, String> driver = ordered.get(0);
+
+        List<Statistics> items = new ArrayList<>();
+        Integer nextAfterId = null;
+        for (int chunks = 0; ; chunks++) {
+            if (chunks == MAX_METADATA_SEARCH_CHUNKS) {
+                nextAfterId = cursor;
+                break;
+            }
+            List<Integer> candidates = statisticsRepository.findIdsByMetadata(driver.getKey(), driver.getValue(), cursor,
+                    METADATA_SEARCH_CHUNK);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            List<Integer> ids = candidates;
+            for (int i = 1; i < ordered.size() && !ids.isEmpty(); i++) {
+                ids = statisticsRepository.findIdsByMetadataIn(ordered.get(i).getKey(), ordered.get(i).getValue(), ids);
+            }
+            if (!ids.isEmpty()) {
+                for (Statistics statistics : statisticsRepository.findByIdInFiltered(ids, dataType, startDate, endDate,
+                        patientScope, doctorScope)) {
+                    items.add(statistics);
+                    if (items.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            if (items.size() == limit) {
+                nextAfterId = items.get(items.size() - 1).getId();
+                break;
+            }
+            cursor = candidates.get(candidates.size() - 1);
+            if (candidates.size() < METADATA_SEARCH_CHUNK) {
+                break;
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("items", items);
+        result.put("nextAfterId", nextAfterId);
+        logger.debug("Metadata search {} driven by {} returned {} items", pairs, driver, items.size());
+        return result;
+    }
+
     public Map<String, Object> getDoctorStatistics(Integer doctorId) {
         logger.info("Fetching doctor statistics for doctorId: {}", doctorId);
+        return doctorStatisticsCache.get(doctorId, this::computeDoctorStatistics);
+    }
 
-        List<AppointmentSlot> appointments = appointmentSlotRepository.findSlotsByDoctorId(doctorId);
-        logger.debug("Found {} appointment slots for doctorId: {}", appointments.size(), doctorId);
+    public Map<String, Object> getDoctorStatisticsCacheMetrics() {
+        return doctorStatisticsCache.getMetrics();
+    }
 
-        List<Rating> ratings = ratingRepository.findByDoctorId(doctorId);
-        logger.debug("Found {} ratings for doctorId: {}", ratings.size(), doctorId);
+    private Map<String, Object> computeDoctorStatistics(Integer doctorId) {
 
         Map<String, Object> stats = new HashMap<>();
 
-        // Aggregate appointments by month
-        Map<String, Long> monthlyAppointments = appointments.stream()
-                .collect(Collectors.groupingBy(
-                        a -> YearMonth.from(a.getSlotStartTime()).toString(),
-                        HashMap::new,
-                        Collectors.counting()
-                ));
+        // Aggregate appointments by month from the daily rollups
+        Map<String, Long> monthlyAppointments = sumByMonth(
+                dailyRollupRepository.sumByDayForDoctor(doctorId, DailyRollup.Metric.booked_slots));
+        monthlyAppointments.values().removeIf(total -> total <= 0);
         stats.put("monthlyAppointments", monthlyAppointments);
 
-        // Aggregate ratings by month
-        Map<String, Double> monthlyRatings = ratings.stream()
-                .collect(Collectors.groupingBy(
-                        r -> YearMonth.from(r.getCreatedAt()).toString(),
-                        HashMap::new,
-                        Collectors.averagingDouble(Rating::getRating)
-                ));
+        // Aggregate ratings by month: average = rating sum / rating count
+        Map<String, Long> ratingCounts = sumByMonth(
+                dailyRollupRepository.sumByDayForDoctor(doctorId, DailyRollup.Metric.rating_count));
+        Map<String, Long> ratingSums = sumByMonth(
+                dailyRollupRepository.sumByDayForDoctor(doctorId, DailyRollup.Metric.rating_sum));
+        Map<String, Double> monthlyRatings = new HashMap<>();
+        ratingCounts.forEach((month, count) -> {
+            if (count > 0) {
+                monthlyRatings.put(month, ratingSums.getOrDefault(month, 0L) / (double) count);
+            }
+        });
         stats.put("monthlyRatings", monthlyRatings);
 
-        logger.info("Returning statistics for doctorId: {} with {} keys", doctorId, stats.size());
+        logger.info("Computed statistics for doctorId: {} with {} keys", doctorId, stats.size());
         return stats;
     }
 
-    public List<Statistics> getSystemStatistics() {
-        logger.info("Fetching system-wide statistics");
-        return statisticsRepository.findAll();
-    }
-
-   public Map<String, Object> getAdminStatistics(LocalDate startDate, LocalDate endDate) {
-    logger.info("Fetching admin statistics from {} to {}", startDate, endDate);
-    Map<String, Object> stats = new HashMap<>();
-
-    // User Activity Trends
-    List<User> users = userRepository.findAll();
-    Map<String, Long> userRegistrations = users.stream()
-            .filter(u -> {
-                LocalDate createdDate = u.getCreatedAt().toLocalDate();
-                return !createdDate.isBefore(startDate) && !createdDate.isAfter(endDate);
-            })
-            .collect(Collectors.groupingBy(
-                    u -> u.getCreatedAt().toLocalDate().toString(),
-                    HashMap::new,
-                    Collectors.counting()
-            ));
-    stats.put("userRegistrations", userRegistrations);
-
-    // Appointment Distribution by Status
-    List<AppointmentSlot> appointments = appointmentSlotRepository.findAll().stream()
-            .filter(a -> {
-                LocalDate slotDate = a.getSlotStartTime().toLocalDate();
-                return !slotDate.isBefore(startDate) && !slotDate.isAfter(endDate);
-            })
-            .collect(Collectors.toList());
-    Map<String, Long> appointmentStatusDistribution = appointments.stream()
-            .collect(Collectors.groupingBy(
-                    a -> a.getStatus().toString(),
-                    HashMap::new,
-                    Collectors.counting()
-            ));
-    stats.put("appointmentStatusDistribution", appointmentStatusDistribution);
-
-    // Appointment Distribution by Doctor
-    Map<String, Long> appointmentsByDoctor = appointments.stream()
-            .filter(a -> a.getDoctor() != null)
-            .collect(Collectors.groupingBy(
-                    a -> a.getDoctor().getFirstName() + " " + a.getDoctor().getLastName(),
-                    HashMap::new,
-                    Collectors.counting()
-            ));
-    stats.put("appointmentsByDoctor", appointmentsByDoctor);
-
-    // Patient Health Metrics
-    List<Statistics> healthStats = statisticsRepository.findByDataTypeAndDateBetween("blood_pressure", startDate, endDate);
-    Map<String, Double> avgBloodPressureByDate = healthStats.stream()
-            .collect(Collectors.groupingBy(
-                    s -> s.getDate().toString(),
-                    HashMap::new,
-                    Collectors.averagingDouble(s -> {
-                        try {
-                            return Double.parseDouble(s.getValue());
-                        } catch (NumberFormatException e) {
-                            return 0.0;
-                        }
-                    })
-            ));
-    stats.put("avgBloodPressureByDate", avgBloodPressureByDate);
-
-    // Engagement Score
-    Map<Integer, Double> engagementScores = new HashMap<>();
-    List<User> patients = userRepository.findByRole(User.Role.patient);
-    for (User patient : patients) {
-        long appointmentCount = appointmentSlotRepository.findSlotsByPatientId(patient.getId()).size();
-        long feedbackCount = ratingRepository.findByPatientId(patient.getId()).size();
-        double score = (appointmentCount * 0.6) + (feedbackCount * 0.4);
-        engagementScores.put(patient.getId(), score);
-    }
-    stats.put("engagementScores", engagementScores);
-
-    // Peak Usage Times
-    Map<String, Long> appointmentsByHour = appointments.stream()
-            .collect(Collectors.groupingBy(
-                    a -> String.valueOf(a.getSlotStartTime().getHour()),
-                    HashMap::new,
-                    Collectors.counting()
-            ));
-    stats.put("appointmentsByHour", appointmentsByHour);
-
-    logger.info("Returning admin statistics with {} keys", stats.size());
-    return stats;
+    /**
+     * Patients ranked by engagement score, highest first. Ranking and paging happen in one grouped
+     * query; patients without any activity are not listed, nor counted in totalPatients.
+     */
+    public Map<String, Object> getEngagementScores(int page, int size) {
+        if (page < 0 || size < 1 || size > MAX_ENGAGEMENT_PAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid page request: page=" + page + ", size=" + size);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("page", page);
+        result.put("size", size);
+        result.put("totalPatients", appointmentSlotRepository.countEngagedPatients());
+        result.put("items", rankEngagement(page * size, size));
+        return result;
+    }
+
+    private List<Map<String, Object>> rankEngagement(int offset, int limit) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (EngagementView row : appointmentSlotRepository.rankEngagement(offset, limit)) {
+            long appointments = row.getAppointments().longValue();
+            long ratings = row.getRatings().longValue();
+            Map<String, Object> item = new HashMap<>();
+            item.put("patientId", row.getPatientId());
+            item.put("appointments", appointments);
+            item.put("ratings", ratings);
+            item.put("score", engagementScore(appointments, ratings));
+            items.add(item);
+        }
+        return items;
+    }
+
+    private double engagementScore(long appointments, long ratings) {
+        return (appointments * 0.6) + (ratings * 0.4);
+    }
+
+    private Map<String, Long> sumByMonth(List<DailyCountView> days) {
+        Map<String, Long> months = new HashMap<>();
+        for (DailyCountView day : days) {
+            months.merge(YearMonth.from(day.getDay()).toString(), day.getTotal(), Long::sum);
+        }
+        return months;
+    }
+
+    /**
+     * Admin dashboard sections, computed concurrently on virtual threads. Sections are independent
+     * but share one deadline for the whole request; a section that fails or is still running when
+     * it passes is cancelled and reported under "failedSections" while the others are still
+     * returned. At most statistics.admin.max-concurrent-sections run at once across all requests,
+     * so the dashboard never holds more connections than that.
+     *
+     * @param sections names from ADMIN_SECTIONS, or null/empty for all of them
+     */
+    public Map<String, Object> getAdminStatistics(LocalDate startDate, LocalDate endDate, Set<String> sections) {
+        logger.info("Fetching admin statistics from {} to {} (sections: {})", startDate, endDate, sections);
+        Set<String> selected = sections == null || sections.isEmpty() ? ADMIN_SECTIONS : sections;
+        for (String section : selected) {
+            if (!ADMIN_SECTIONS.contains(section)) {
+                throw new IllegalArgumentException("Unknown section: " + section + ", expected one of " + ADMIN_SECTIONS);
+            }
+        }
+
+        Map<String, Future<Map<String, Object>>> futures = new LinkedHashMap<>();
+        for (String section : selected) {
+            futures.put(section, adminSectionExecutor.submit(() -> {
+                adminSectionPermits.acquire();
+                try {
+                    return computeAdminSection(section, startDate, endDate);
+                } finally {
+                    adminSectionPermits.release();
+                }
+            }));
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, String> failedSections = new LinkedHashMap<>();
+        long deadline = System.nanoTime() + adminSectionTimeoutMillis * 1_000_000L;
+        try {
+            for (Map.Entry<String, Future<Map<String, Object>>> entry : futures.entrySet()) {
+                try {
+                    long remaining = Math.max(0, deadline - System.nanoTime());
+                    stats.putAll(entry.getValue().get(remaining, TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    logger.warn("Admin statistics section {} timed out after {} ms", entry.getKey(), adminSectionTimeoutMillis);
+                    failedSections.put(entry.getKey(), "timeout");
+                } catch (ExecutionException e) {
+                    logger.error("Admin statistics section {} failed", entry.getKey(), e.getCause());
+                    failedSections.put(entry.getKey(), "error");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing admin statistics", e);
+        } finally {
+            // No section outlives the request
+            futures.values().forEach(future -> future.cancel(true));
+        }
+        if (!failedSections.isEmpty()) {
+            stats.put("failedSections", failedSections);
+        }
+
+        logger.info("Returning admin statistics with {} keys", stats.size());
+        return stats;
+    }
+
+    private Map<String, Object> computeAdminSection(String section, LocalDate startDate, LocalDate endDate) {
+        Map<String, Object> stats = new HashMap<>();
+        switch (section) {
+            case "userRegistrations" -> {
+                // User Activity Trends
+                Map<String, Long> userRegistrations = new HashMap<>();
+                for (DailyCountView row : dailyRollupRepository.sumByDay(DailyRollup.Metric.registrations, startDate, endDate)) {
+                    userRegistrations.put(row.getDay().toString(), row.getTotal());
+                }
+                stats.put("userRegistrations", userRegistrations);
+            }
+            case "appointmentStatusDistribution" -> {
+                // Appointment Distribution by Status (covers unbooked slots too, so it is not rolled up)
+                LocalDateTime from = startDate.atStartOfDay();
+                LocalDateTime to = endDate.plusDays(1).atStartOfDay();
+                Map<String, Long> appointmentStatusDistribution = new HashMap<>();
+                for (StatusCountView row : appointmentSlotRepository.countByStatusBetween(from, to)) {
+                    String status = row.getStatus() != null ? row.getStatus().toString() : "none";
+                    appointmentStatusDistribution.merge(status, row.getTotal(), Long::sum);
+                }
+                stats.put("appointmentStatusDistribution", appointmentStatusDistribution);
+            }
+            case "appointmentsByDoctor" -> {
+                Map<String, Long> appointmentsByDoctor = new HashMap<>();
+                for (DoctorCountView row : dailyRollupRepository.sumByDoctor(DailyRollup.Metric.booked_slots, startDate, endDate)) {
+                    if (row.getTotal() > 0) {
+                        appointmentsByDoctor.merge(row.getFirstName() + " " + row.getLastName(), row.getTotal(), Long::sum);
+                    }
+                }
+                stats.put("appointmentsByDoctor", appointmentsByDoctor);
+            }
+            case "bloodPressure" -> {
+                // Patient Health Metrics (systolic in avgBloodPressureByDate, diastolic alongside)
+                Map<String, Double> avgBloodPressureByDate = new HashMap<>();
+                Map<String, Double> avgDiastolicByDate = new HashMap<>();
+                for (DailyVitalAverageView row : vitalsService.getDailyAverages(VitalsService.BLOOD_PRESSURE, startDate, endDate)) {
+                    avgBloodPressureByDate.put(row.getDay().toString(), row.getPrimaryAvg());
+                    if (row.getSecondaryAvg() != null) {
+                        avgDiastolicByDate.put(row.getDay().toString(), row.getSecondaryAvg());
+                    }
+                }
+                stats.put("avgBloodPressureByDate", avgBloodPressureByDate);
+                stats.put("avgDiastolicByDate", avgDiastolicByDate);
+            }
+            case "engagementScores" -> {
+                // Top patients only; the full ranking is paginated via getEngagementScores
+                Map<Integer, Double> engagementScores = new LinkedHashMap<>();
+                for (Map<String, Object> entry : rankEngagement(0, TOP_ENGAGEMENT_PATIENTS)) {
+                    engagementScores.put((Integer) entry.get("patientId"), (Double) entry.get("score"));
+                }
+                stats.put("engagementScores", engagementScores);
+            }
+            case "appointmentsByHour" -> {
+                // Peak Usage Times (all slots, booked or not, like the status distribution)
+                Map<String, Long> appointmentsByHour = new HashMap<>();
+                for (HourCountView row : appointmentSlotRepository.countByHourBetween(
+                        startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay())) {
+                    appointmentsByHour.put(String.valueOf(row.getHour()), row.getTotal());
+                }
+                stats.put("appointmentsByHour", appointmentsByHour);
+            }
+            default -> throw new IllegalArgumentException("Unknown section: " + section);
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        adminSectionExecutor.shutdownNow();
+    }
 }
-}
\ No newline at end of file
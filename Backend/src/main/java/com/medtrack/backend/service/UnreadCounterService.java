@@ -0,0 +1,188 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.ChatReadWatermark;
+import com.medtrack.backend.repository.ChatReadWatermarkRepository;
+import com.medtrack.backend.repository.ChatRepository;
+import com.medtrack.backend.repository.UnreadCountView;
+import com.medtrack.backend.util.TransactionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user, per-peer unread message counts held in memory. A user's counters are seeded from one
+ * grouped COUNT the first time they are asked for, then kept current by sendMessage and reads.
+ * Each peer counter remembers the highest seq already reflected in it, so a message that was both
+ * counted by a query and incremented after its commit is only counted once. Increments and
+ * recounts of one peer counter run under that counter's lock, so a send that commits while a read
+ * is recounting waits for the new count and is then checked against its seq instead of being lost.
+ * <p>
+ * The user's entry exists before its seed query runs; sends and reads that commit while the query
+ * is in flight are queued on the entry and merged once the query returns, so none are lost. At
+ * most chat.unread.max-users users are kept, least recently used first out; an evicted user is
+ * simply seeded again on their next read.
+ */
+@Service
+public class UnreadCounterService {
+    private final ChatRepository chatRepository;
+    private final ChatReadWatermarkRepository chatReadWatermarkRepository;
+    private final Map<Integer, UserCounters> counters;
+
+    // Written under its own monitor; unread is read without it
+    private static class PeerCounter {
+        final LongAdder unread = new LongAdder();
+        long countedUpToSeq = Long.MIN_VALUE;
+    }
+
+    private static class UserCounters {
+        final Map<Integer, PeerCounter> peers = new ConcurrentHashMap<>();
+        final Object seedLock = new Object();
+        volatile boolean seeded;
+        // Guarded by this entry's monitor until seeded is set
+        final Map<Integer, List<Long>> sentDuringSeed = new HashMap<>();
+        final Map<Integer, Integer> readDuringSeed = new HashMap<>();
+    }
+
+    @Autowired
+    public UnreadCounterService(ChatRepository chatRepository, ChatReadWatermarkRepository chatReadWatermarkRepository,
+                                @Value("${chat.unread.max-users:100000}") int maxUsers) {
+        this.chatRepository = chatRepository;
+        this.chatReadWatermarkRepository = chatReadWatermarkRepository;
+        this.counters = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, UserCounters> eldest) {
+                return size() > maxUsers;
+            }
+        });
+    }
+
+    public Map<Integer, Long> getCounts(Integer userId) {
+        Map<Integer, Long> counts = new HashMap<>();
+        seeded(userId).forEach((peerId, counter) -> {
+            long unread = counter.unread.sum();
+            if (unread > 0) {
+                counts.put(peerId, unread);
+            }
+        });
+        return counts;
+    }
+
+    public long getTotal(Integer userId) {
+        long total = 0;
+        for (PeerCounter counter : seeded(userId).values()) {
+            total += counter.unread.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Counts a new message for its receiver once the message commits. Receivers whose counters
+     * are not loaded yet are skipped: their seed query will see the message.
+     */
+    public void messageSent(Integer receiverId, Integer senderId, long seq) {
+        TransactionUtils.afterCommit(() -> {
+            UserCounters user = counters.get(receiverId);
+            if (user == null) {
+                return;
+            }
+            synchronized (user) {
+                if (!user.seeded) {
+                    user.sentDuringSeed.computeIfAbsent(senderId, id -> new ArrayList<>()).add(seq);
+                    return;
+                }
+            }
+            PeerCounter counter = user.peers.computeIfAbsent(senderId, id -> new PeerCounter());
+            synchronized (counter) {
+                if (seq > counter.countedUpToSeq) {
+                    counter.unread.increment();
+                }
+            }
+        });
+    }
+
+    /**
+     * Resets the counter for one peer from the database after the reader's watermark moved.
+     */
+    public void conversationRead(Integer userId, Integer peerId, Integer conversationId) {
+        TransactionUtils.afterCommit(() -> {
+            UserCounters user = counters.get(userId);
+            if (user == null) {
+                return;
+            }
+            synchronized (user) {
+                if (!user.seeded) {
+                    user.readDuringSeed.put(peerId, conversationId);
+                    return;
+                }
+            }
+            recount(user, userId, peerId, conversationId);
+        });
+    }
+
+    // Resets the peer counter in place so that concurrent increments always hit the live counter
+    private void recount(UserCounters user, Integer userId, Integer peerId, Integer conversationId) {
+        PeerCounter counter = user.peers.computeIfAbsent(peerId, id -> new PeerCounter());
+        synchronized (counter) {
+            long watermark = Long.MIN_VALUE;
+            for (ChatReadWatermark row : chatReadWatermarkRepository.findByConversationId(conversationId)) {
+                if (row.getUserId().equals(userId)) {
+                    watermark = row.getLastReadSeq();
+                }
+            }
+            List<UnreadCountView> rows = chatRepository.countUnreadFromPeer(userId, peerId);
+            counter.unread.reset();
+            if (!rows.isEmpty() && rows.get(0).getUnread() > 0) {
+                counter.unread.add(rows.get(0).getUnread());
+                watermark = Math.max(watermark, rows.get(0).getMaxSeq());
+            }
+            counter.countedUpToSeq = watermark;
+        }
+    }
+
+    private Map<Integer, PeerCounter> seeded(Integer userId) {
+        UserCounters user = counters.computeIfAbsent(userId, id -> new UserCounters());
+        if (user.seeded) {
+            return user.peers;
+        }
+        synchronized (user.seedLock) {
+            if (user.seeded) {
+                return user.peers;
+            }
+            for (UnreadCountView row : chatRepository.countUnreadByPeer(userId)) {
+                PeerCounter counter = new PeerCounter();
+                counter.unread.add(row.getUnread());
+                counter.countedUpToSeq = row.getMaxSeq();
+                user.peers.put(row.getPeerId(), counter);
+            }
+            Map<Integer, Integer> reads;
+            synchronized (user) {
+                user.sentDuringSeed.forEach((peerId, seqs) -> {
+                    PeerCounter counter = user.peers.computeIfAbsent(peerId, id -> new PeerCounter());
+                    synchronized (counter) {
+                        for (long seq : seqs) {
+                            if (seq > counter.countedUpToSeq) {
+                                counter.unread.increment();
+                            }
+                        }
+                    }
+                });
+                reads = new HashMap<>(user.readDuringSeed);
+                user.sentDuringSeed.clear();
+                user.readDuringSeed.clear();
+                user.seeded = true;
+            }
+            // The seed query may have run before these reads committed
+            reads.forEach((peerId, conversationId) -> recount(user, userId, peerId, conversationId));
+            return user.peers;
+        }
+    }
+}
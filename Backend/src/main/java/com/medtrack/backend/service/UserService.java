@@ -3,18 +3,34 @@ package com.medtrack.backend.service;
 import com.medtrack.backend.entity.User;
 import com.medtrack.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
+    private final RollupService rollupService;
+    // Chat participants by id, LRU-bounded; see findCachedById
+    private final Map<Integer, User> cachedUsers;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, RollupService rollupService,
+                       @Value("${chat.user-cache.max-entries:10000}") int maxCachedUsers) {
         this.userRepository = userRepository;
+        this.rollupService = rollupService;
+        this.cachedUsers = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, User> eldest) {
+                return size() > maxCachedUsers;
+            }
+        });
     }
 
     public List<User> getAllUsers() {
@@ -34,8 +50,11 @@ public class UserService {
         return userRepository.findById(id).orElseThrow(() -> new RuntimeException("User not found"));
     }
 
+    @Transactional
     public User createUser(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        rollupService.recordRegistration(saved.getCreatedAt());
+        return saved;
     }
 
     public User updateUser(Integer id, User user) {
@@ -47,11 +66,14 @@ public class UserService {
         existingUser.setSpecialty(user.getSpecialty());
         existingUser.setLocation(user.getLocation());
         existingUser.setProfileComplete(user.isProfileComplete());
-        return userRepository.save(existingUser);
+        User saved = userRepository.save(existingUser);
+        cachedUsers.remove(id);
+        return saved;
     }
 
     public void deleteUser(Integer id) {
         userRepository.deleteById(id);
+        cachedUsers.remove(id);
     }
 
     public User getUserByUsername(String username) {
@@ -62,4 +84,18 @@ public class UserService {
     public Optional<User> findById(Integer id) {
         return userRepository.findById(id);
     }
+
+    /**
+     * findById served from memory for the chat send path, which resolves both participants of
+     * every message. updateUser and deleteUser evict the entry.
+     */
+    public Optional<User> findCachedById(Integer id) {
+        User cached = cachedUsers.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<User> user = userRepository.findById(id);
+        user.ifPresent(found -> cachedUsers.put(id, found));
+        return user;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,244 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.Notification;
+import com.medtrack.backend.entity.User;
+import com.medtrack.backend.entity.VitalReading;
+import com.medtrack.backend.repository.AppointmentRepository;
+import com.medtrack.backend.repository.VitalReadingRepository;
+import com.medtrack.backend.util.TransactionUtils;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Flags vital readings that are far from the patient's own baseline. Each (patient, dataType)
+ * series keeps an exponentially weighted mean and variance per value component, so state is O(1)
+ * per series; the map of series is LRU-bounded. A reading whose z-score exceeds the threshold
+ * notifies the doctor of the patient's most recent appointment. State is rebuilt from recent
+ * vital_readings at startup, without alerting. Live readings are held back until the rebuild is
+ * done, then scored in order, skipping any the rebuild already replayed.
+ */
+@Service
+public class VitalAnomalyDetector {
+    private static final Logger logger = LoggerFactory.getLogger(VitalAnomalyDetector.class);
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final int MAX_DEFERRED_READINGS = 100_000;
+
+    private final VitalReadingRepository vitalReadingRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final NotificationService notificationService;
+    private final ExecutorService alertExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<SeriesKey, SeriesState> series;
+    private final double alpha;
+    private final double zThreshold;
+    private final int warmupSamples;
+    private final long alertCooldownMinutes;
+    private final int historyDays;
+    // Readings committed while the rebuild runs; null once it has finished
+    private final Object rebuildLock = new Object();
+    private List<DeferredReading> deferred = new ArrayList<>();
+    private long deferredDropped;
+
+    private record DeferredReading(VitalReading reading, boolean alert) {
+    }
+
+    private record SeriesKey(Integer patientId, String dataType) {
+    }
+
+    // Exponentially weighted mean/variance (West's incremental form) for each value component
+    private static class SeriesState {
+        long samples;
+        final double[] mean = new double[2];
+        final double[] variance = new double[2];
+        LocalDateTime lastAlertAt;
+    }
+
+    @Autowired
+    public VitalAnomalyDetector(VitalReadingRepository vitalReadingRepository, AppointmentRepository appointmentRepository,
+                                NotificationService notificationService,
+                                @Value("${vitals.anomaly.max-series:50000}") int maxSeries,
+                                @Value("${vitals.anomaly.alpha:0.1}") double alpha,
+                                @Value("${vitals.anomaly.z-threshold:4.0}") double zThreshold,
+                                @Value("${vitals.anomaly.warmup-samples:10}") int warmupSamples,
+                                @Value("${vitals.anomaly.alert-cooldown-minutes:60}") long alertCooldownMinutes,
+                                @Value("${vitals.anomaly.history-days:30}") int historyDays) {
+        this.vitalReadingRepository = vitalReadingRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.notificationService = notificationService;
+        this.alpha = alpha;
+        this.zThreshold = zThreshold;
+        this.warmupSamples = warmupSamples;
+        this.alertCooldownMinutes = alertCooldownMinutes;
+        this.historyDays = historyDays;
+        this.series = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SeriesKey, SeriesState> eldest) {
+                return size() > maxSeries;
+            }
+        };
+    }
+
+    /**
+     * Scores a newly stored reading once its transaction commits, then folds it into the baseline.
+     */
+    public void observe(VitalReading reading) {
+        TransactionUtils.afterCommit(() -> scoreLive(reading, true));
+    }
+
+    /**
+     * Scores a reading whose write has already committed, alerting only when alert is set;
+     * historical imports pass false so old readings update the baseline without notifying anyone.
+     */
+    public void scoreCommitted(VitalReading reading, boolean alert) {
+        scoreLive(reading, alert);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        alertExecutor.execute(() -> {
+            LocalDateTime since = LocalDateTime.now().minusDays(historyDays);
+            // Readings above the high-water mark were committed after this point and are scored live
+            long highWaterMark = 0;
+            long replayed = 0;
+            try {
+                highWaterMark = vitalReadingRepository.findMaxId();
+                long lastId = 0;
+                List<VitalReading> batch;
+                do {
+                    batch = vitalReadingRepository.findRecordedSince(since, lastId, highWaterMark,
+                            PageRequest.of(0, REBUILD_BATCH_SIZE));
+                    for (VitalReading reading : batch) {
+                        score(reading, false);
+                        lastId = reading.getId();
+                    }
+                    replayed += batch.size();
+                } while (batch.size() == REBUILD_BATCH_SIZE);
+                logger.info("Rebuilt vital anomaly baselines from {} readings since {}", replayed, since);
+            } catch (RuntimeException e) {
+                logger.error("Failed to rebuild vital anomaly baselines after {} readings", replayed, e);
+            } finally {
+                releaseDeferred(highWaterMark);
+            }
+        });
+    }
+
+    private void scoreLive(VitalReading reading, boolean alert) {
+        synchronized (rebuildLock) {
+            if (deferred != null) {
+                if (deferred.size() < MAX_DEFERRED_READINGS) {
+                    deferred.add(new DeferredReading(reading, alert));
+                } else {
+                    deferredDropped++;
+                }
+                return;
+            }
+        }
+        score(reading, alert);
+    }
+
+    private void releaseDeferred(long highWaterMark) {
+        synchronized (rebuildLock) {
+            int scored = 0;
+            for (DeferredReading pending : deferred) {
+                Long id = pending.reading().getId();
+                if (id == null || id > highWaterMark) {
+                    score(pending.reading(), pending.alert());
+                    scored++;
+                }
+            }
+            if (deferredDropped > 0) {
+                logger.warn("Dropped {} vital readings committed during the baseline rebuild", deferredDropped);
+            }
+            logger.info("Scored {} of {} vital readings held back during the baseline rebuild", scored, deferred.size());
+            deferred = null;
+        }
+    }
+
+    private void score(VitalReading reading, boolean alert) {
+        double[] values = reading.getSecondaryValue() != null
+                ? new double[]{reading.getPrimaryValue(), reading.getSecondaryValue()}
+                : new double[]{reading.getPrimaryValue()};
+        double worstZ = 0;
+        double baseline = 0;
+        boolean raise;
+        synchronized (series) {
+            SeriesState state = series.computeIfAbsent(new SeriesKey(reading.getPatientId(), reading.getDataType()),
+                    key -> new SeriesState());
+            for (int i = 0; i < values.length; i++) {
+                if (state.samples == 0) {
+                    state.mean[i] = values[i];
+                    continue;
+                }
+                // Floor the deviation so a perfectly flat history does not turn tiny changes into alerts
+                double deviation = Math.max(Math.sqrt(state.variance[i]), Math.max(Math.abs(state.mean[i]) * 0.02, 1e-6));
+                double z = Math.abs(values[i] - state.mean[i]) / deviation;
+                if (z > worstZ) {
+                    worstZ = z;
+                    // The mean the reading was compared against, before the reading is folded in
+                    baseline = state.mean[i];
+                }
+                double diff = values[i] - state.mean[i];
+                double increment = alpha * diff;
+                state.mean[i] += increment;
+                state.variance[i] = (1 - alpha) * (state.variance[i] + diff * increment);
+            }
+            raise = alert && state.samples >= warmupSamples && worstZ > zThreshold
+                    && (state.lastAlertAt == null || state.lastAlertAt.plusMinutes(alertCooldownMinutes).isBefore(LocalDateTime.now()));
+            if (raise) {
+                state.lastAlertAt = LocalDateTime.now();
+            }
+            state.samples++;
+        }
+        if (raise) {
+            double z = worstZ;
+            double expected = baseline;
+            alertExecutor.execute(() -> notifyDoctor(reading, z, expected));
+        }
+    }
+
+    private void notifyDoctor(VitalReading reading, double z, double baseline) {
+        try {
+            List<User> doctors = appointmentRepository.findLatestDoctorsByPatientId(reading.getPatientId(), PageRequest.of(0, 1));
+            if (doctors.isEmpty()) {
+                logger.info("Anomalous {} reading for patient {} but no treating doctor", reading.getDataType(), reading.getPatientId());
+                return;
+            }
+            String value = reading.getSecondaryValue() != null
+                    ? format(reading.getPrimaryValue()) + "/" + format(reading.getSecondaryValue())
+                    : format(reading.getPrimaryValue());
+            Notification notification = new Notification();
+            notification.setUser(doctors.get(0));
+            notification.setMessage(String.format("Unusual %s reading %s for patient %d on %s (baseline %s, %.1f standard deviations away)",
+                    reading.getDataType(), value, reading.getPatientId(), reading.getRecordedAt().toLocalDate(),
+                    format(baseline), z));
+            notificationService.createNotification(notification);
+            logger.info("Notified doctor {} of anomalous {} reading for patient {}", doctors.get(0).getId(),
+                    reading.getDataType(), reading.getPatientId());
+        } catch (RuntimeException e) {
+            logger.error("Failed to notify doctor of anomalous reading for patient {}", reading.getPatientId(), e);
+        }
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format("%.1f", value);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        alertExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,179 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.Statistics;
+import com.medtrack.backend.entity.VitalReading;
+import com.medtrack.backend.repository.DailyVitalAverageView;
+import com.medtrack.backend.repository.StatisticsRepository;
+import com.medtrack.backend.repository.VitalBucketView;
+import com.medtrack.backend.repository.VitalReadingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed time series of patient measurements. Values are parsed once on write into numeric
+ * columns, so charts are served from server-side min/max/avg buckets instead of re-parsing strings.
+ */
+@Service
+public class VitalsService {
+    private static final Logger logger = LoggerFactory.getLogger(VitalsService.class);
+
+    public static final String BLOOD_PRESSURE = "blood_pressure";
+    private static final int DEFAULT_POINTS = 200;
+    private static final int MAX_POINTS = 1000;
+    private static final long MIN_BUCKET_SECONDS = 60;
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private final VitalReadingRepository vitalReadingRepository;
+    private final StatisticsRepository statisticsRepository;
+
+    @Autowired
+    public VitalsService(VitalReadingRepository vitalReadingRepository, StatisticsRepository statisticsRepository) {
+        this.vitalReadingRepository = vitalReadingRepository;
+        this.statisticsRepository = statisticsRepository;
+    }
+
+    /**
+     * Parses a measurement into its numeric components: "120/80" gives two values, "72.5" one.
+     */
+    public static double[] parseValue(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Value is missing");
+        }
+        String[] parts = value.trim().split("/");
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("Value has too many components: " + value);
+        }
+        double[] components = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                components[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Value is not numeric: " + value);
+            }
+            if (!Double.isFinite(components[i])) {
+                throw new IllegalArgumentException("Value is not finite: " + value);
+            }
+        }
+        return components;
+    }
+
+    public static VitalReading toReading(Integer patientId, String dataType, LocalDateTime recordedAt, double[] components) {
+        VitalReading reading = new VitalReading();
+        reading.setPatientId(patientId);
+        reading.setDataType(dataType);
+        reading.setRecordedAt(recordedAt);
+        reading.setPrimaryValue(components[0]);
+        reading.setSecondaryValue(components.length > 1 ? components[1] : null);
+        return reading;
+    }
+
+    /**
+     * Writes the typed reading for a saved Statistics row. Rows without a patient or with a
+     * non-numeric value stay in the legacy table only, and null is returned for them.
+     */
+    @Transactional
+    public VitalReading recordFromStatistics(Statistics statistics) {
+        VitalReading reading = fromStatistics(statistics);
+        return reading != null ? vitalReadingRepository.save(reading) : null;
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> getSeries(Integer patientId, String dataType, LocalDateTime from, LocalDateTime to,
+                                         Integer points) {
+        if (from == null || to == null || !to.isAfter(from)) {
+            throw new IllegalArgumentException("Invalid time range: " + from + " to " + to);
+        }
+        int targetPoints = points != null ? Math.max(1, Math.min(points, MAX_POINTS)) : DEFAULT_POINTS;
+        long rangeSeconds = Duration.between(from, to).getSeconds();
+        long bucketSeconds = Math.max(MIN_BUCKET_SECONDS, (rangeSeconds + targetPoints - 1) / targetPoints);
+
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (VitalBucketView row : vitalReadingRepository.aggregateBuckets(patientId, dataType, from, to, bucketSeconds)) {
+            Map<String, Object> bucket = new HashMap<>();
+            bucket.put("start", from.plusSeconds(row.getBucket().longValue() * bucketSeconds));
+            bucket.put("samples", row.getSamples().longValue());
+            bucket.put("min", row.getPrimaryMin().doubleValue());
+            bucket.put("max", row.getPrimaryMax().doubleValue());
+            bucket.put("avg", row.getPrimaryAvg().doubleValue());
+            if (row.getSecondaryAvg() != null) {
+                bucket.put("secondaryMin", row.getSecondaryMin().doubleValue());
+                bucket.put("secondaryMax", row.getSecondaryMax().doubleValue());
+                bucket.put("secondaryAvg", row.getSecondaryAvg().doubleValue());
+            }
+            buckets.add(bucket);
+        }
+
+        Map<String, Object> series = new HashMap<>();
+        series.put("patientId", patientId);
+        series.put("dataType", dataType);
+        series.put("from", from);
+        series.put("to", to);
+        series.put("bucketSeconds", bucketSeconds);
+        series.put("buckets", buckets);
+        return series;
+    }
+
+    public List<DailyVitalAverageView> getDailyAverages(String dataType, LocalDate startDate, LocalDate endDate) {
+        return vitalReadingRepository.averageByDay(dataType, startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Copies existing Statistics rows into the typed series. It scans from the first row and skips
+     * those that already have a reading, since addStatistics dual-writes new rows, so it can be
+     * re-run safely at any time.
+     */
+    public void backfillFromStatistics() {
+        Integer lastId = 0;
+        int copied = 0;
+        int skipped = 0;
+        while (true) {
+            List<Statistics> batch = statisticsRepository.findUncopiedAfter(
+                    lastId, PageRequest.of(0, BACKFILL_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<VitalReading> readings = new ArrayList<>();
+            for (Statistics statistics : batch) {
+                VitalReading reading = fromStatistics(statistics);
+                if (reading != null) {
+                    readings.add(reading);
+                } else {
+                    skipped++;
+                }
+            }
+            vitalReadingRepository.saveAll(readings);
+            copied += readings.size();
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+        logger.info("Backfilled {} vital readings ({} statistics rows skipped)", copied, skipped);
+    }
+
+    private VitalReading fromStatistics(Statistics statistics) {
+        if (statistics.getPatient() == null || statistics.getPatient().getId() == null || statistics.getDate() == null) {
+            return null;
+        }
+        double[] components;
+        try {
+            components = parseValue(statistics.getValue());
+        } catch (IllegalArgumentException e) {
+            logger.debug("Statistics {} not stored as a vital reading: {}", statistics.getId(), e.getMessage());
+            return null;
+        }
+        VitalReading reading = toReading(statistics.getPatient().getId(), statistics.getDataType(),
+                statistics.getDate().atStartOfDay(), components);
+        reading.setSourceStatisticsId(statistics.getId());
+        return reading;
+    }
+}
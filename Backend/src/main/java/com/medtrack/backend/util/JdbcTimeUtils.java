@@ -0,0 +1,21 @@
+package com.medtrack.backend.util;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+public final class JdbcTimeUtils {
+    private JdbcTimeUtils() {
+    }
+
+    /**
+     * Binds a LocalDateTime the way Hibernate does with hibernate.jdbc.time_zone=UTC, so rows
+     * written through plain JDBC store the same wall time as rows written through JPA.
+     */
+    public static void setTimestamp(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+        ps.setTimestamp(index, Timestamp.valueOf(value), Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+    }
+}
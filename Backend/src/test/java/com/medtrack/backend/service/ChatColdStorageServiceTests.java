@@ -0,0 +1,66 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.ChatColdSegment;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatColdStorageServiceTests {
+
+	private static final int CONVERSATION = 7;
+
+	@Test
+	void segmentsRoundTrip() {
+		List<ChatColdStorageService.ColdMessage> messages = List.of(
+				new ChatColdStorageService.ColdMessage(101, CONVERSATION, -3, 1, 2,
+						LocalDateTime.of(2019, 1, 2, 3, 4, 5), "legacy message"),
+				new ChatColdStorageService.ColdMessage(250, CONVERSATION, 1, 2, 1,
+						LocalDateTime.of(2024, 6, 30, 23, 59, 59, 123_456_789), "Fi\u00e8vre 39\u00b0C \ud83e\udd12"),
+				new ChatColdStorageService.ColdMessage(251, CONVERSATION, 2, 1, 2,
+						LocalDateTime.of(2024, 7, 1, 0, 0), ""));
+		assertEquals(messages, ChatColdStorageService.decode(segment(ChatColdStorageService.encode(messages))));
+	}
+
+	@Test
+	void emptySegmentRoundTrips() {
+		assertTrue(ChatColdStorageService.decode(segment(ChatColdStorageService.encode(List.of()))).isEmpty());
+	}
+
+	@Test
+	void repetitiveTextIsCompressed() {
+		String text = "Please take one tablet after breakfast and one after dinner.";
+		List<ChatColdStorageService.ColdMessage> messages = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			messages.add(new ChatColdStorageService.ColdMessage(i + 1, CONVERSATION, i + 1, 1, 2,
+					LocalDateTime.of(2024, 1, 1, 8, 0).plusMinutes(i), text));
+		}
+		byte[] data = ChatColdStorageService.encode(messages);
+		assertTrue(data.length < text.length() * messages.size() / 4, "segment was " + data.length + " bytes");
+		assertEquals(messages, ChatColdStorageService.decode(segment(data)));
+	}
+
+	@Test
+	void truncatedSegmentIsReportedAsCorrupt() {
+		byte[] data = ChatColdStorageService.encode(List.of(new ChatColdStorageService.ColdMessage(1, CONVERSATION, 1, 1, 2,
+				LocalDateTime.of(2024, 1, 1, 8, 0), "hello")));
+		assertThrows(UncheckedIOException.class,
+				() -> ChatColdStorageService.decode(segment(Arrays.copyOf(data, data.length / 2))));
+	}
+
+	private static ChatColdSegment segment(byte[] data) {
+		ChatColdSegment segment = new ChatColdSegment();
+		segment.setId(1L);
+		segment.setConversationId(CONVERSATION);
+		segment.setData(data);
+		return segment;
+	}
+
+}
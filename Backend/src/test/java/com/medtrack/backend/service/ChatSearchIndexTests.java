@@ -0,0 +1,171 @@
+package com.medtrack.backend.service;
+
+import com.medtrack.backend.entity.Chat;
+import com.medtrack.backend.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatSearchIndexTests {
+
+	private static final int PATIENT = 1;
+	private static final int DOCTOR = 2;
+	private static final int OTHER_PATIENT = 3;
+	private static final int OTHER_DOCTOR = 4;
+
+	private ChatSearchIndex index;
+
+	@BeforeEach
+	void setUp() {
+		// add and search never touch the repositories; only a rebuild does
+		index = new ChatSearchIndex(null, null);
+	}
+
+	@Test
+	void postingsRoundTripInSeqOrder() {
+		ChatSearchIndex.Postings postings = new ChatSearchIndex.Postings();
+		long[] seqs = {1, 2, 130, 70_000, 5_000_000_000L};
+		int[] frequencies = {1, 3, 200, 1, 7};
+		for (int i = 0; i < seqs.length; i++) {
+			assertTrue(postings.add(seqs[i], frequencies[i]));
+		}
+		assertDecodes(postings, seqs, frequencies);
+	}
+
+	@Test
+	void postingsKeepNegativeLegacySeqs() {
+		ChatSearchIndex.Postings postings = new ChatSearchIndex.Postings();
+		long[] seqs = {-1_000_000, -64, -1, 0, 1, 64};
+		int[] frequencies = {2, 1, 1, 4, 1, 1};
+		for (int i = 0; i < seqs.length; i++) {
+			assertTrue(postings.add(seqs[i], frequencies[i]));
+		}
+		assertDecodes(postings, seqs, frequencies);
+	}
+
+	@Test
+	void postingsInsertOutOfOrderSeqsInPlace() {
+		ChatSearchIndex.Postings postings = new ChatSearchIndex.Postings();
+		postings.add(10, 1);
+		postings.add(20, 2);
+		postings.add(15, 3);
+		postings.add(-5, 4);
+		postings.add(30, 5);
+		assertDecodes(postings, new long[] {-5, 10, 15, 20, 30}, new int[] {4, 1, 3, 2, 5});
+	}
+
+	@Test
+	void postingsIgnoreDuplicateSeqs() {
+		ChatSearchIndex.Postings postings = new ChatSearchIndex.Postings();
+		postings.add(1, 1);
+		postings.add(5, 1);
+		assertFalse(postings.add(5, 9));
+		assertFalse(postings.add(1, 9));
+		assertDecodes(postings, new long[] {1, 5}, new int[] {1, 1});
+	}
+
+	@Test
+	void tokenizeFoldsCaseAndAccentsAndDropsSingleLetters() {
+		assertEquals(List.of("fievre", "depuis", "3", "jours"), ChatSearchIndex.tokenize("Fi\u00e8vre depuis 3 jours, a"));
+		assertEquals(List.of(), ChatSearchIndex.tokenize(null));
+	}
+
+	@Test
+	void requiresEveryQueryTerm() {
+		add(1, 1, PATIENT, DOCTOR, "blood pressure is high");
+		add(1, 2, DOCTOR, PATIENT, "check your blood sugar");
+		List<ChatSearchIndex.Hit> hits = index.search(PATIENT, null, "blood pressure");
+		assertEquals(1, hits.size());
+		assertEquals(1, hits.get(0).seq());
+	}
+
+	@Test
+	void ranksByTermFrequencyThenNewestFirst() {
+		add(1, 1, PATIENT, DOCTOR, "pressure");
+		add(1, 2, DOCTOR, PATIENT, "pressure pressure pressure");
+		add(1, 3, PATIENT, DOCTOR, "pressure again");
+		add(1, 4, PATIENT, DOCTOR, "unrelated");
+		List<ChatSearchIndex.Hit> hits = index.search(PATIENT, null, "pressure");
+		assertEquals(List.of(2L, 3L, 1L), hits.stream().map(ChatSearchIndex.Hit::seq).toList());
+		assertTrue(hits.get(0).score() > hits.get(1).score());
+		assertEquals(hits.get(1).score(), hits.get(2).score(), 1e-9);
+	}
+
+	@Test
+	void rarerTermsWeighMore() {
+		for (int seq = 1; seq <= 10; seq++) {
+			add(1, seq, PATIENT, DOCTOR, "dose taken");
+		}
+		add(1, 11, PATIENT, DOCTOR, "dose dizzy");
+		List<ChatSearchIndex.Hit> rare = index.search(PATIENT, null, "dizzy");
+		List<ChatSearchIndex.Hit> common = index.search(PATIENT, null, "dose");
+		assertEquals(1, rare.size());
+		assertEquals(11, common.size());
+		double commonScore = common.stream().filter(hit -> hit.seq() == 11).findFirst().orElseThrow().score();
+		assertTrue(rare.get(0).score() > commonScore);
+	}
+
+	@Test
+	void onlySearchesTheCallersConversations() {
+		add(1, 1, PATIENT, DOCTOR, "insulin schedule");
+		add(2, 1, OTHER_PATIENT, OTHER_DOCTOR, "insulin schedule");
+		add(3, 1, OTHER_PATIENT, DOCTOR, "insulin schedule");
+
+		List<ChatSearchIndex.Hit> patientHits = index.search(PATIENT, null, "insulin");
+		assertEquals(List.of(1), patientHits.stream().map(ChatSearchIndex.Hit::conversationId).toList());
+
+		List<ChatSearchIndex.Hit> doctorHits = index.search(DOCTOR, null, "insulin");
+		assertEquals(2, doctorHits.size());
+		assertTrue(doctorHits.stream().noneMatch(hit -> hit.conversationId() == 2));
+
+		List<ChatSearchIndex.Hit> withPeer = index.search(DOCTOR, OTHER_PATIENT, "insulin");
+		assertEquals(List.of(3), withPeer.stream().map(ChatSearchIndex.Hit::conversationId).toList());
+
+		assertTrue(index.search(OTHER_DOCTOR, PATIENT, "insulin").isEmpty());
+	}
+
+	@Test
+	void reAddingAMessageDoesNotDuplicateHits() {
+		add(1, 1, PATIENT, DOCTOR, "refill prescription");
+		add(1, 1, PATIENT, DOCTOR, "refill prescription");
+		assertEquals(1, index.search(PATIENT, null, "refill").size());
+	}
+
+	@Test
+	void rejectsQueriesWithoutWords() {
+		assertThrows(IllegalArgumentException.class, () -> index.search(PATIENT, null, "?! a"));
+	}
+
+	private void add(int conversationId, long seq, int senderId, int receiverId, String message) {
+		Chat chat = new Chat();
+		chat.setConversationId(conversationId);
+		chat.setSeq(seq);
+		chat.setSender(user(senderId));
+		chat.setReceiver(user(receiverId));
+		chat.setMessage(message);
+		index.add(chat);
+	}
+
+	private static User user(int id) {
+		User user = new User();
+		user.setId(id);
+		return user;
+	}
+
+	private static void assertDecodes(ChatSearchIndex.Postings postings, long[] seqs, int[] frequencies) {
+		assertEquals(seqs.length, postings.count);
+		long[] decodedSeqs = new long[postings.count];
+		int[] decodedFrequencies = new int[postings.count];
+		postings.decode(decodedSeqs, decodedFrequencies);
+		assertArrayEquals(seqs, decodedSeqs);
+		assertArrayEquals(frequencies, decodedFrequencies);
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.medtrack.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTests {
+
+	@Test
+	void smallValuesHaveTheirOwnBucket() {
+		for (long value = 0; value < 128; value++) {
+			assertEquals(value, QuantileSketch.bucketIndex(value));
+			assertEquals(value, QuantileSketch.bucketMidpoint((int) value));
+		}
+	}
+
+	@Test
+	void bucketsAreContiguousAndMidpointsStayWithinHalfAPercent() {
+		int previous = QuantileSketch.bucketIndex(0);
+		for (long value = 1; value <= 1 << 22; value++) {
+			int index = QuantileSketch.bucketIndex(value);
+			assertTrue(index == previous || index == previous + 1, "bucket gap at " + value);
+			long midpoint = QuantileSketch.bucketMidpoint(index);
+			assertTrue(Math.abs(midpoint - value) * 128 <= value, "midpoint " + midpoint + " too far from " + value);
+			previous = index;
+		}
+	}
+
+	@Test
+	void quantilesAreWithinTheRelativeErrorBound() {
+		QuantileSketch sketch = new QuantileSketch();
+		int n = 100_000;
+		for (long value = 1; value <= n; value++) {
+			sketch.record(value, 1);
+		}
+		assertEquals(n, sketch.getCount());
+		assertEquals(1L, sketch.getMin());
+		assertEquals((long) n, sketch.getMax());
+		for (double q : new double[] {0.01, 0.25, 0.5, 0.9, 0.99, 0.999, 1.0}) {
+			long exact = (long) Math.ceil(q * n);
+			long estimate = sketch.quantile(q);
+			assertTrue(Math.abs(estimate - exact) <= exact * 0.016, "p" + q + " was " + estimate + ", expected " + exact);
+		}
+	}
+
+	@Test
+	void emptySketchHasNoQuantiles() {
+		QuantileSketch sketch = new QuantileSketch();
+		assertEquals(0, sketch.getCount());
+		assertNull(sketch.quantile(0.5));
+		assertNull(sketch.getMin());
+		assertNull(sketch.getMax());
+	}
+
+	@Test
+	void removingMoreThanABucketHoldsKeepsCountConsistent() {
+		QuantileSketch sketch = new QuantileSketch();
+		sketch.record(5, 1);
+		sketch.record(5000, -1);
+		assertEquals(1, sketch.getCount());
+		assertEquals(5L, sketch.quantile(0.5));
+
+		sketch.record(5, -3);
+		assertEquals(0, sketch.getCount());
+		assertNull(sketch.quantile(0.5));
+
+		sketch.record(7, 1);
+		assertEquals(1, sketch.getCount());
+		assertEquals(7L, sketch.quantile(0.99));
+	}
+
+	@Test
+	void mergingMatchesASingleSketch() {
+		QuantileSketch whole = new QuantileSketch();
+		QuantileSketch first = new QuantileSketch();
+		QuantileSketch second = new QuantileSketch();
+		for (long value = 0; value < 10_000; value += 7) {
+			whole.record(value, 1);
+			(value < 5_000 ? first : second).record(value, 1);
+		}
+		first.merge(second);
+		assertArrayEquals(whole.toBytes(), first.toBytes());
+	}
+
+	@Test
+	void serializationRoundTrips() {
+		QuantileSketch sketch = new QuantileSketch();
+		sketch.record(3, 2);
+		sketch.record(300, 1);
+		sketch.record(1_000_000, 4);
+		QuantileSketch copy = QuantileSketch.fromBytes(sketch.toBytes());
+		assertEquals(sketch.getCount(), copy.getCount());
+		assertEquals(sketch.getMin(), copy.getMin());
+		assertEquals(sketch.getMax(), copy.getMax());
+		assertEquals(sketch.quantile(0.5), copy.quantile(0.5));
+		assertArrayEquals(sketch.toBytes(), copy.toBytes());
+		assertEquals(0, QuantileSketch.fromBytes(new byte[0]).getCount());
+	}
+
+}